@@ -4,6 +4,7 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.hardware.*;
 import org.swerverobotics.library.interfaces.*;
 import org.swerverobotics.library.internal.*;
+import java.nio.ByteOrder;
 import java.util.*;
 
 /**
@@ -79,6 +80,45 @@ public final class ClassFactory
         createEasyMotorController(context, motor1, motor2);
         }
 
+    /**
+     * Returns the velocity estimator which the controller of the indicated motor maintains for
+     * it. Easy motor controllers estimate the velocity and acceleration of their motors from the
+     * encoder readings they make anyway, so querying the estimate never touches the hardware and
+     * may be done from any thread.
+     *
+     * <p>Note that the estimate is in the controller's sense of direction: it is not negated
+     * if the direction of the motor is REVERSE.</p>
+     *
+     * @param motor the motor of interest
+     * @return      the estimator for that motor, or null if its controller doesn't keep one,
+     *              as is the case if it isn't an easy motor controller
+     * @see #createEasyMotorController(OpMode, DcMotor, DcMotor)
+     */
+    public static IEncoderVelocityEstimator getVelocityEstimator(DcMotor motor)
+        {
+        // Look through any wrappers, such as those used in SynchronousOpMode
+        Object controller = motor.getController();
+        while (!(controller instanceof IVelocityEstimatingMotorController) && controller instanceof IHardwareWrapper)
+            controller = ((IHardwareWrapper<?>)controller).getWrappedTarget();
+
+        if (controller instanceof IVelocityEstimatingMotorController)
+            return ((IVelocityEstimatingMotorController)controller).getVelocityEstimator(motor.getPortNumber());
+        return null;
+        }
+
+    /**
+     * Creates a free-standing velocity estimator, for use with encoder readings which the
+     * caller makes itself.
+     * @param windowSize    the number of readings over which the estimator fits. Larger
+     *                      windows give smoother estimates that lag further behind.
+     * @return              the newly created estimator
+     * @see #getVelocityEstimator(DcMotor)
+     */
+    public static IEncoderVelocityEstimator createEncoderVelocityEstimator(int windowSize)
+        {
+        return new EncoderVelocityEstimator(windowSize);
+        }
+
     /**
      * Creates an alternate 'easy' implementation of the controller for the indicated collection
      * of servos, which must all share the same controller, and must be <em>all</em> the servos
@@ -191,6 +231,59 @@ public final class ClassFactory
         return AdaFruitBNO055IMU.create(context, i2cDevice, parameters);
         }
 
+    /**
+     * Creates an acceleration integration algorithm which, unlike the default one, integrates to
+     * second order, applies zero velocity updates when the sensor is stationary, and estimates
+     * and removes accelerometer bias. Its thresholds assume accelerations in m/s^2.
+     *
+     * @return  the newly created integration algorithm
+     * @see IBNO055IMU.Parameters#accelerationIntegrationAlgorithm
+     * @see #createDriftCorrectingAccelerationIntegrator(double, int, double)
+     */
+    public static IAccelerationIntegrator createDriftCorrectingAccelerationIntegrator()
+        {
+        return new DriftCorrectingAccelerationIntegrator();
+        }
+
+    /**
+     * As in {@link #createDriftCorrectingAccelerationIntegrator()}, but with explicit tuning.
+     *
+     * @param stationaryThreshold   the magnitude, in the acceleration units of the sensor, below which
+     *                              both acceleration and its change between samples must remain
+     *                              for the sensor to be deemed stationary
+     * @param msStationary          the time for which that must hold, in milliseconds
+     * @param biasTimeConstant      the time constant, in seconds, of the filter that estimates bias
+     * @return                      the newly created integration algorithm
+     */
+    public static IAccelerationIntegrator createDriftCorrectingAccelerationIntegrator(double stationaryThreshold, int msStationary, double biasTimeConstant)
+        {
+        return new DriftCorrectingAccelerationIntegrator(stationaryThreshold, msStationary, biasTimeConstant);
+        }
+
+    /**
+     * Creates an odometer which tracks the pose of a robot with a differential drive by fusing
+     * the encoders of its left and right drive motors with the heading reported by an IMU. Once
+     * started, the odometer reads the hardware on a thread of its own, so that autonomous code
+     * can ask where the robot is as often as it likes without itself issuing any reads.
+     *
+     * <p>If the IMU is sampling in the background, the odometer will use those samples rather
+     * than reading the heading itself.</p>
+     *
+     * @param context       the OpMode within which the odometer is to be used
+     * @param left          the motor driving the left side of the robot
+     * @param right         the motor driving the right side of the robot
+     * @param imu           the IMU from which heading is to be read. If null, heading is
+     *                      computed from the encoders alone.
+     * @param parameters    the geometry of the robot and the rate at which the pose is updated
+     * @return              the newly created odometer, not yet started
+     * @see IOdometer#start()
+     * @see IBNO055IMU#startSampling(int)
+     */
+    public static IOdometer createOdometer(OpMode context, DcMotor left, DcMotor right, IBNO055IMU imu, IOdometer.Parameters parameters)
+        {
+        return new EncoderImuOdometer(context, left, right, imu, parameters);
+        }
+
 
     /**
      * Creates an alternate implementation of the target color sensor. The target sensor is
@@ -293,6 +386,21 @@ public final class ClassFactory
         return new I2cDeviceClient(context, i2cDevice, i2cAddr8Bit, closeOnOpModeStop);
         }
 
+    /**
+     * Creates a register map through which a driver can declare the registers of its I2C device
+     * and have them read efficiently, rather than managing read windows by hand.
+     *
+     * @param deviceClient  the client through which the device is to be accessed
+     * @param byteOrder     the order in which the bytes of multi-byte registers are laid out
+     * @param readMode      the read mode to use for the read windows the map plans
+     * @return              the newly created, as yet empty, register map
+     * @see II2cRegisterMap#define(String, int, int, boolean, double, II2cRegisterMap.VOLATILITY, II2cRegisterMap.ACCESS)
+     */
+    public static II2cRegisterMap createI2cRegisterMap(II2cDeviceClient deviceClient, ByteOrder byteOrder, II2cDeviceClient.READ_MODE readMode)
+        {
+        return new I2cRegisterMap(deviceClient, byteOrder, readMode);
+        }
+
     //----------------------------------------------------------------------------------------------
     // Miscellaneous
     //----------------------------------------------------------------------------------------------
@@ -6,7 +6,11 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.robocol.Telemetry;
 import org.swerverobotics.library.interfaces.*;
 import org.swerverobotics.library.internal.*;
+import org.swerverobotics.library.exceptions.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 
 /**
  * TelemetryDashboardAndLog is a telemetry helper class that makes it easier write 
@@ -27,7 +31,8 @@ import java.util.*;
  * {@link #setUpdateIntervalMs(int)}. This helps both reduce network traffic and reduce
  * the cost on the robot controller itself of acquiring telemetry data for transmission,
  * as the acquisition of the data itself can sometimes be quite expensive, depending on what
- * is being shown.</p>
+ * is being shown. Moreover, if nothing shown has changed since the last transmission, nothing
+ * is transmitted, save for a full refresh every so often (see {@link #setRefreshIntervalMs(int)}).</p>
  *
  * <p>Data can be shown in the dashboard in one (or both) of two ways:</p>
  * <ol>
@@ -48,6 +53,9 @@ import java.util.*;
  * When new additions are made to the log, they are conveyed to the driver station in an
  * expeditious manner. The dashboard is also updated at such times. The order of the display
  * of log messages can be controlled with {@link org.swerverobotics.library.TelemetryDashboardAndLog.Log#setDisplayOldToNew(boolean) setDisplayOldToNew()}.</p>
+ *
+ * <p>Finally, the composition and transmission of telemetry can be moved off of the threads
+ * that produce it altogether, with {@link #startAsyncPublishing()}.</p>
  */
 public class TelemetryDashboardAndLog
     {
@@ -109,21 +117,68 @@ public class TelemetryDashboardAndLog
         this.msUpdateInterval = msUpdateInterval;
         }
 
+    /**
+     * Advanced: retrieves the longest interval for which transmission to the driver station
+     * is skipped because nothing displayed has changed. Once this interval has passed, the
+     * next update transmits the full contents of the telemetry regardless.
+     *
+     * @return  the current refresh interval, in milliseconds
+     *
+     * @see #setRefreshIntervalMs(int)
+     */
+    public int getRefreshIntervalMs()
+        {
+        return msRefreshInterval;
+        }
+
+    /**
+     * Advanced: sets the longest interval for which unchanged telemetry is not retransmitted.
+     * Zero causes every update to transmit, changed or not.
+     *
+     * @param msRefreshInterval the new refresh interval, in milliseconds
+     *
+     * @see #getRefreshIntervalMs()
+     */
+    public void setRefreshIntervalMs(int msRefreshInterval)
+        {
+        this.msRefreshInterval = msRefreshInterval;
+        }
+
     //------------------------------------------------------------------------------------------
     // Private State
     //------------------------------------------------------------------------------------------
 
-    private String itemDelimiter    = " | ";
-    private int    msUpdateInterval = 500;
+    private String itemDelimiter     = " | ";
+    private int    msUpdateInterval  = 500;
+    private int    msRefreshInterval = 2000;
 
     private Vector<Runnable>        actions = null;
     private Vector<Line>            composableLines = null;
-    private Vector<String>          composedLines = null;
+    private Vector<ComposedLine>    composedLines = null;
     private boolean                 updateSinceAddComposedLine = false;
 
     private long                    nanoLastUpdate = 0;
+    private long                    nanoLastTransmission = 0;
+    private ArrayList<String>       lineValues = new ArrayList<String>();       // the lines as just composed
+    private ArrayList<String>       lineValuesSent = new ArrayList<String>();   // the lines as last transmitted
     private EventLoopManager        eventLoopManager;
 
+    // Serializes composition and transmission, and so guards nanoLastUpdate, lineValues and
+    // the like. Taken after 'this', never before it.
+    private final Object            composeLock = new Object();
+
+    // Asynchronous publishing. User threads post composed lines to asyncComposedLines without
+    // locking; update() hands them over to the publisher by draining that queue into a fresh
+    // list. The queue itself is never replaced, so no posting can land in a stale one.
+    private static final int        msPublisherStopWait = 100;
+    private final Object            publisherLock = new Object();
+    private final AtomicReference<Thread> publisher = new AtomicReference<Thread>(null);
+    private OpMode                  publisherStopRegistrant = null;    // guarded by publisherLock
+    private volatile boolean        asyncForceRequested = false;
+    private volatile List<ComposedLine> asyncPublishedLines = new ArrayList<ComposedLine>();
+    private final ConcurrentLinkedQueue<ComposedLine> asyncComposedLines = new ConcurrentLinkedQueue<ComposedLine>();
+    private final Object            asyncHandoffLock = new Object();   // serializes update()s draining asyncComposedLines
+
     //----------------------------------------------------------------------------------------------
     // Construction
     //----------------------------------------------------------------------------------------------
@@ -165,9 +220,9 @@ public class TelemetryDashboardAndLog
      *
      * @see Telemetry#addData(String, String)
      */
-    public synchronized void addData(String caption, String msg)
+    public void addData(String caption, String msg)
         {
-        this.addComposedLine(caption, msg);
+        this.addComposedLine(new ComposedLine(caption, msg));
         }
 
     /**
@@ -181,9 +236,9 @@ public class TelemetryDashboardAndLog
      * @see #addData(String, String)
      * @see Telemetry#addData(String, Object)
      */
-    public synchronized void addData(String caption, Object value)
+    public void addData(String caption, Object value)
         {
-        this.addComposedLine(caption, value.toString());
+        this.addComposedLine(new ComposedLine(caption, value.toString()));
         }
 
     /**
@@ -197,7 +252,7 @@ public class TelemetryDashboardAndLog
      * @see #addData(String, String)
      * @see Telemetry#addData(String, float)
      */
-    public synchronized void addData(String caption, float value)
+    public void addData(String caption, float value)
         {
         this.addData(caption, (double)value);
         }
@@ -213,21 +268,32 @@ public class TelemetryDashboardAndLog
      * @see #addData(String, String)
      * @see Telemetry#addData(String, double)
      */
-    public synchronized void addData(String caption, double value)
+    public void addData(String caption, double value)
         {
-        this.addComposedLine(caption, Double.toString(value));
+        // Formatting the number is left to whoever composes the line
+        this.addComposedLine(new ComposedLine(caption, value));
         }
 
-    private void addComposedLine(String caption, String value)
+    private void addComposedLine(ComposedLine line)
         {
-        if (this.updateSinceAddComposedLine)
-            this.composedLines.clear();
+        if (this.publisher.get() != null)
+            {
+            this.asyncComposedLines.add(line);
 
-        // We display both the key and the value for these, as that's what the
-        // raw telemetry does. However, we do NOT sort on the caption, as that
-        // has little utility.
-        this.composedLines.add(String.format("%s : %s", caption, value));
-        this.updateSinceAddComposedLine = false;
+            // If the publisher went away meanwhile, make sure the line isn't stranded
+            if (this.publisher.get() == null)
+                this.drainAsyncComposedLines();
+            return;
+            }
+
+        synchronized (this)
+            {
+            if (this.updateSinceAddComposedLine)
+                this.composedLines.clear();
+
+            this.composedLines.add(line);
+            this.updateSinceAddComposedLine = false;
+            }
         }
 
     //------------------------------------------------------------------------------------------
@@ -246,15 +312,21 @@ public class TelemetryDashboardAndLog
 
     private void clearComposedLines()
         {
-        this.composedLines    = new Vector<String>();
+        this.composedLines    = new Vector<ComposedLine>();
         }
 
+    private static final String[] keys = new String[64];
+
     private static String getKey(int iLine)
         {
         // At present (Aug 8, 2015), the driver station both sorts by the key we return here
         // but also DISPLAYS it! Ugh. So we try to conserve space. And we use Unicode characters
         // that don't actually take up space on the display.
-        return String.format("%c", 0x180 + iLine);
+        if (iLine >= keys.length)
+            return String.valueOf((char)(0x180 + iLine));
+        if (keys[iLine] == null)
+            keys[iLine] = String.valueOf((char)(0x180 + iLine));
+        return keys[iLine];
         }
 
      /**
@@ -263,13 +335,18 @@ public class TelemetryDashboardAndLog
       * Note that telemetry isn't *actually* transmitted on each call. Rather, transmission
       * to the driver station is throttled to normally be sent at the end of every update
       * interval. However, when a message is added to the log, the driver station is always
-      * updated on the next call to update().
+      * updated on the next call to update(). Conversely, if nothing shown has changed since
+      * the last transmission, none is made until the refresh interval has passed.
+      *
+      * <p>When publishing asynchronously, update() merely hands the lines added with addData()
+      * to the publisher thread, and never itself transmits.</p>
       *
       * @return whether an update to the driver station was made or not
       * @see #getUpdateIntervalMs()
       * @see #update(int)
+      * @see #startAsyncPublishing()
       */
-    public synchronized boolean update()
+    public boolean update()
         {
         return update(getUpdateIntervalMs());
         }
@@ -281,10 +358,12 @@ public class TelemetryDashboardAndLog
      * but that operation is now complete, and you want the driver station telemetry to now
      * accurately reflect the final state of the operation.
      *
-     * @return whether an update to the drive station was made or not (will always be true)
+     * @return whether an update to the drive station was made or not (will always be true).
+     *         When publishing asynchronously, the transmission is made promptly by the
+     *         publisher thread.
      * @see #update()
      */
-    public synchronized boolean updateNow()
+    public boolean updateNow()
         {
         return update(getUpdateIntervalMs(), true, true);
         }
@@ -297,89 +376,339 @@ public class TelemetryDashboardAndLog
      * @return whether an update to the driver station was made or not
      * @see #update()
      */
-    public synchronized boolean update(int msUpdateInterval)
+    public boolean update(int msUpdateInterval)
         {
         return update(msUpdateInterval, true, false);
         }
 
-    private synchronized boolean update(int msUpdateInterval, boolean userRequest, boolean forced)
+    private boolean update(int msUpdateInterval, boolean userRequest, boolean forced)
+        {
+        Thread publisher = this.publisher.get();
+        if (publisher != null)
+            {
+            // Hand the lines composed since the last update (if any) to the publisher
+            if (userRequest && !this.asyncComposedLines.isEmpty())
+                {
+                // Serialized only against other update()s, so that two of them can't each
+                // take part of the lines and have one's part overwrite the other's
+                synchronized (this.asyncHandoffLock)
+                    {
+                    List<ComposedLine> lines = new ArrayList<ComposedLine>();
+                    for (ComposedLine line = this.asyncComposedLines.poll(); line != null; line = this.asyncComposedLines.poll())
+                        lines.add(line);
+                    if (!lines.isEmpty())
+                        this.asyncPublishedLines = lines;
+                    }
+                }
+            if (forced)
+                {
+                this.asyncForceRequested = true;
+                LockSupport.unpark(publisher);
+                }
+            return forced;
+            }
+
+        return updateSynchronously(msUpdateInterval, userRequest, forced);
+        }
+
+    private synchronized boolean updateSynchronously(int msUpdateInterval, boolean userRequest, boolean forced)
         {
         boolean result = false;
 
         // Don't actually put out updates too often so as to avoid excessive pointless
         // computation in the robot controller and (to a lesser extent) reduced network
         // traffic to the driver station.
-        long nanoNow = System.nanoTime();
-        if (forced || nanoLastUpdate == 0
-                || nanoNow > nanoLastUpdate + (long)msUpdateInterval * SynchronousOpMode.NANO_TO_MILLI
-                || log.newLogMessagesAvailable
-                )
+        synchronized (this.composeLock)
             {
-            // Ok, we're going to update the telemetry
-
-            // Evaluate any delayed actions we've been asked to do
-            for (Runnable action : this.actions)
+            long nanoNow = System.nanoTime();
+            if (forced || nanoLastUpdate == 0
+                    || nanoNow > nanoLastUpdate + (long)msUpdateInterval * SynchronousOpMode.NANO_TO_MILLI
+                    || log.newLogMessagesAvailable
+                    )
                 {
-                action.run();
+                // Ok, we're going to update the telemetry
+                result = this.composeAndTransmit(this.actions, this.composableLines, this.composedLines, forced, nanoNow);
                 }
+            }
 
-            // Get a copy of all the data
-            final Vector<String> keys = new Vector<String>();
-            final Vector<String> values = new Vector<String>();
-            int iLine = 0;
+        // We ALWAYS clear the composed lines, as the user, generally,
+        // has no idea which update() calls actually transmit.
+        if (userRequest)
+            this.updateSinceAddComposedLine = true;
 
-            // Compose each of the composable lines
-            for (Line line : this.composableLines)
-                {
-                keys.add(getKey(iLine));
-                values.add(composableLines.elementAt(iLine).compose());
-                iLine++;
-                }
+        return result;
+        }
 
-            // Copy each of the composed lines
-            for (String line : this.composedLines)
-                {
-                keys.add(getKey(iLine));
-                values.add(line);
-                iLine++;
-                }
+    /**
+     * Evaluates the actions, composes the lines, and transmits them if they've changed. The
+     * caller must hold composeLock. In synchronous mode the caller also holds our lock; in
+     * asynchronous mode the collections passed are private copies.
+     */
+    private boolean composeAndTransmit(List<Runnable> actions, List<Line> composableLines, List<ComposedLine> composedLines, boolean forced, long nanoNow)
+        {
+        boolean result = false;
 
-            // Add on the log
-            int size = this.log.logQueue.size();
-            for (int i = 0; i < size; i++)
-                {
-                String s = this.log.isDisplayOldToNew() ? this.log.logQueue.elementAt(i) : this.log.logQueue.elementAt(size - 1 - i);
-                keys.add(getKey(iLine));
-                values.add(s);
-                iLine++;
-                }
+        // Evaluate any delayed actions we've been asked to do
+        for (Runnable action : actions)
+            {
+            action.run();
+            }
 
+        // Compose the value of each line of the display. The keys are just the line numbers.
+        this.lineValues.clear();
+        for (Line line : composableLines)
+            {
+            this.lineValues.add(line.compose());
+            }
+        for (ComposedLine line : composedLines)
+            {
+            this.lineValues.add(line.compose());
+            }
+
+        // Add on the log. We clear the flag first: a message added while we copy sets it
+        // again, and so is sent promptly even if our copy missed it.
+        this.log.newLogMessagesAvailable = false;
+        this.log.copyTo(this.lineValues);
+
+        // The driver station replaces its whole display with each transmission, so we can't
+        // send just the lines that changed. But if none of them did, we needn't send anything,
+        // save for an occasional refresh in case a transmission went astray.
+        boolean refreshDue = nanoNow - this.nanoLastTransmission >= (long)this.msRefreshInterval * SynchronousOpMode.NANO_TO_MILLI;
+        if (forced || refreshDue || !this.lineValues.equals(this.lineValuesSent))
+            {
             // Build an object to carry our telemetry data.
             // Transmit same to the driver station.
             Telemetry transmitter = new Telemetry();
             //
-            for (int i = 0; i < keys.size(); i++)
+            for (int iLine = 0; iLine < this.lineValues.size(); iLine++)
                 {
-                transmitter.addData(
-                        keys.elementAt(i),
-                        values.elementAt(i));
+                transmitter.addData(getKey(iLine), this.lineValues.get(iLine));
                 }
             //
             if (transmitter.hasData())
                 this.eventLoopManager.sendTelemetryData(transmitter);
 
-            // Update our state for the next time around
-            this.nanoLastUpdate = nanoNow;
-            this.log.newLogMessagesAvailable = false;
+            // Remember what we sent by swapping buffers, so as not to allocate
+            ArrayList<String> temp = this.lineValuesSent;
+            this.lineValuesSent = this.lineValues;
+            this.lineValues = temp;
+            this.nanoLastTransmission = nanoNow;
             result = true;
             }
 
-        // We ALWAYS clear the composed lines, as the user, generally,
-        // has no idea which update() calls actually transmit.
-        if (userRequest)
+        // Update our state for the next time around
+        this.nanoLastUpdate = nanoNow;
+        return result;
+        }
+
+    //------------------------------------------------------------------------------------------
+    // Asynchronous publishing
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * Starts publishing telemetry asynchronously. A low priority publisher thread takes over
+     * all the work of telemetry: every update interval (or promptly, after a log message or
+     * {@link #updateNow()}) it evaluates the dashboard's actions and items, composes the
+     * lines, and transmits them to the driver station. Calls to update() and addData() then
+     * merely post their data for the publisher, without locking, and return at once, so
+     * telemetry adds no latency to the threads that produce it.
+     *
+     * <p>Note that the items of the dashboard are then evaluated on the publisher thread. In
+     * a SynchronousOpMode, if this method is called from a synchronous thread the publisher is
+     * itself a synchronous thread, so items may read hardware as usual. The publisher stops
+     * automatically when the OpMode does.</p>
+     *
+     * @see #stopAsyncPublishing()
+     */
+    public void startAsyncPublishing()
+        {
+        synchronized (this.publisherLock)
+            {
+            if (this.publisher.get() != null)
+                return;
+
+            IInterruptableRunnable body = new IInterruptableRunnable()
+                {
+                @Override public void run() throws InterruptedException
+                    {
+                    publish();
+                    }
+                };
+
+            final OpMode opMode = SwerveThreadContext.getOpMode();
+            Thread thread;
+            if (opMode instanceof SynchronousOpMode && SwerveThreadContext.isSynchronousThread())
+                {
+                // So that items can read hardware. SynchronousOpMode stops these threads itself.
+                thread = ((SynchronousOpMode)opMode).createSynchronousWorkerThread(body);
+                }
+            else
+                {
+                thread = new Thread(new Runnable()
+                    {
+                    @Override public void run()
+                        {
+                        publish();
+                        }
+                    });
+                thread.setDaemon(true);
+                if (opMode != null && opMode != this.publisherStopRegistrant)
+                    {
+                    // One registration serves every start within the OpMode
+                    RobotStateTransitionNotifier.register(opMode, new IOpModeStateTransitionEvents()
+                        {
+                        @Override public boolean onUserOpModeStop() { stopAsyncPublishing(); return true; }
+                        @Override public boolean onRobotShutdown()  { stopAsyncPublishing(); return true; }
+                        });
+                    this.publisherStopRegistrant = opMode;
+                    }
+                }
+            thread.setName("telemetry publisher");
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            // Lines already added carry over
+            synchronized (this)
+                {
+                if (!this.updateSinceAddComposedLine)
+                    {
+                    this.asyncPublishedLines = new ArrayList<ComposedLine>();
+                    this.asyncComposedLines.addAll(this.composedLines);
+                    }
+                else
+                    this.asyncPublishedLines = new ArrayList<ComposedLine>(this.composedLines);
+                }
+
+            this.publisher.set(thread);
+            thread.start();
+            }
+        }
+
+    /**
+     * Stops publishing asynchronously. Subsequent calls to update() once again compose and
+     * transmit on the calling thread.
+     * @see #startAsyncPublishing()
+     */
+    public void stopAsyncPublishing()
+        {
+        synchronized (this.publisherLock)
+            {
+            Thread thread;
+            synchronized (this)
+                {
+                // Hold our lock so that no synchronous addData() slips in before we reclaim
+                thread = this.publisher.getAndSet(null);
+                if (thread != null)
+                    this.reclaimAsyncLines();
+                }
+            if (thread != null)
+                {
+                thread.interrupt();
+                try {
+                    // Should the publisher take longer than this to finish, composeLock keeps
+                    // it from interfering with synchronous updates made in the meantime.
+                    thread.join(msPublisherStopWait);
+                    }
+                catch (InterruptedException e)
+                    {
+                    Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }
+
+    /**
+     * Returns the lines posted while publishing asynchronously to the dashboard proper, so that
+     * they're shown by synchronous updates just as they would have been by the publisher.
+     */
+    private void reclaimAsyncLines()
+        {
+        synchronized (this)
+            {
+            // Those the publisher was showing remain until someone adds another line
+            this.composedLines = new Vector<ComposedLine>(this.asyncPublishedLines);
             this.updateSinceAddComposedLine = true;
+            this.drainAsyncComposedLines();
+            }
+        }
 
-        return result;
+    /**
+     * Moves lines posted but not yet handed to the publisher into the dashboard proper
+     */
+    private void drainAsyncComposedLines()
+        {
+        synchronized (this)
+            {
+            ConcurrentLinkedQueue<ComposedLine> queue = this.asyncComposedLines;
+            for (ComposedLine line = queue.poll(); line != null; line = queue.poll())
+                {
+                if (this.updateSinceAddComposedLine)
+                    this.composedLines.clear();
+                this.composedLines.add(line);
+                this.updateSinceAddComposedLine = false;
+                }
+            }
+        }
+
+    /**
+     * Answers whether telemetry is being published asynchronously.
+     * @return whether telemetry is being published asynchronously
+     * @see #startAsyncPublishing()
+     */
+    public boolean isAsyncPublishing()
+        {
+        return this.publisher.get() != null;
+        }
+
+    private void publish()
+        {
+        Thread self = Thread.currentThread();
+        long nanoNext = System.nanoTime();
+        try {
+            while (!self.isInterrupted())
+                {
+                long nanoNow = System.nanoTime();
+                boolean forced = this.asyncForceRequested;
+                if (forced || nanoNow - nanoNext >= 0 || this.log.newLogMessagesAvailable)
+                    {
+                    this.asyncForceRequested = false;
+
+                    // Take private copies of the dashboard's structure; that's all we need the lock for
+                    List<Runnable> actions;
+                    List<Line>     composableLines;
+                    synchronized (this)
+                        {
+                        actions         = new ArrayList<Runnable>(this.actions);
+                        composableLines = new ArrayList<Line>(this.composableLines);
+                        }
+                    synchronized (this.composeLock)
+                        {
+                        this.composeAndTransmit(actions, composableLines, this.asyncPublishedLines, forced, nanoNow);
+                        }
+                    nanoNext = nanoNow + (long)this.msUpdateInterval * SynchronousOpMode.NANO_TO_MILLI;
+                    }
+
+                // Sleep until the next update is due, or until we're poked
+                LockSupport.parkNanos(this, Math.max(0, nanoNext - System.nanoTime()));
+                }
+            }
+        catch (RuntimeInterruptedException e)
+            {
+            // an item's hardware read was interrupted: we're being stopped
+            }
+        catch (RuntimeException e)
+            {
+            android.util.Log.e(SynchronousOpMode.LOGGING_TAG, String.format("telemetry publisher failed: %s", e));
+            }
+        finally
+            {
+            // If we're going away on our own, go back to updating synchronously rather than
+            // leave update() and addData() handing lines to a thread that's no longer there.
+            synchronized (this)
+                {
+                if (this.publisher.compareAndSet(self, null))
+                    this.reclaimAsyncLines();
+                }
+            }
         }
 
     //------------------------------------------------------------------------------------------
@@ -510,6 +839,59 @@ public class TelemetryDashboardAndLog
         this.composableLines.add(line);
         }
 
+    /**
+     * Add lines to the dashboard that show the bus statistics of an I2C device client. The
+     * statistics are retrieved only once per transmission to the driver station.
+     *
+     * @param caption   the caption with which to label the lines
+     * @param client    the client whose statistics are to be shown
+     * @see II2cDeviceClient#getI2cStatistics()
+     */
+    public synchronized void addI2cStatisticsLines(String caption, final II2cDeviceClient client)
+        {
+        final II2cDeviceClient.I2cStatistics[] stats = new II2cDeviceClient.I2cStatistics[1];
+
+        this.addAction(new Runnable() { @Override public void run()
+            {
+            stats[0] = client.getI2cStatistics();
+            }
+        });
+        this.addLine(
+            this.item(caption + " rd cache/issued: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return String.format("%d/%d", stats[0].readsServedFromCache, stats[0].readsIssued);
+                }}),
+            this.item("sw r/w: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return String.format("%d/%d", stats[0].readModeSwitches, stats[0].writeModeSwitches);
+                }}),
+            this.item("bytes r/w: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return String.format("%d/%d", stats[0].bytesRead, stats[0].bytesWritten);
+                }}),
+            this.item("hb: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return stats[0].heartbeats;
+                }})
+            );
+        this.addLine(
+            this.item(caption + " cb: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return stats[0].callbackDuration;
+                }})
+            );
+        this.addLine(
+            this.item(caption + " rdWait: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return stats[0].readerWait;
+                }}),
+            this.item("wrWait: ", new IFunc<Object>() { @Override public Object value()
+                {
+                return stats[0].writerWait;
+                }})
+            );
+        }
+
     //==============================================================================================
 
     public class Log
@@ -561,22 +943,44 @@ public class TelemetryDashboardAndLog
          */
         public void setCapacity(int capacity)
             {
-            this.capacity = capacity;
-            this.prune();
+            synchronized (this.lock)
+                {
+                capacity = Math.max(0, capacity);
+                AtomicReferenceArray<String> ring = new AtomicReferenceArray<String>(Math.max(1, capacity));
+
+                // Keep the newest messages that still fit, oldest first
+                int count = Math.min(this.count, capacity);
+                for (int i = 0; i < count; i++)
+                    {
+                    ring.set(i, this.ring.get(this.index(this.count - count + i)));
+                    }
+
+                this.beginWrite();
+                this.ring     = ring;
+                this.first    = 0;
+                this.count    = count;
+                this.capacity = capacity;
+                this.endWrite();
+                }
             }
 
         //------------------------------------------------------------------------------------------
         // Private State
         //------------------------------------------------------------------------------------------
 
-        private Vector<String>  logQueue = new Vector<String>();
-        private boolean         newLogMessagesAvailable = false;
-        private int             capacity = 9;
-
-        // We just use the outer class so as to *mindlessly* avoid any potential deadlocks
-        private Object getLock() { return TelemetryDashboardAndLog.this; }
+        // The messages are kept in a ring buffer of 'capacity' entries, the oldest at 'first'.
+        // Writers serialize on 'lock'. Readers take no lock: they copy out the messages then
+        // check 'sequence', which writers make odd while they're modifying the ring, to see
+        // whether they need to try again.
+        private final Object                    lock = new Object();
+        private volatile AtomicReferenceArray<String> ring = new AtomicReferenceArray<String>(9);
+        private volatile int                    first = 0;
+        private volatile int                    count = 0;
+        private volatile int                    capacity = 9;
+        private volatile int                    sequence = 0;
+        private volatile boolean                newLogMessagesAvailable = false;
 
-        private boolean displayOldToNew = true;
+        private volatile boolean displayOldToNew = true;
 
         //------------------------------------------------------------------------------------------
         // Operations
@@ -589,14 +993,33 @@ public class TelemetryDashboardAndLog
          */
         public void add(String msg)
             {
-            synchronized (this.getLock())
+            synchronized (this.lock)
                 {
-                this.logQueue.add(msg);
+                if (this.capacity > 0)
+                    {
+                    this.beginWrite();
+                    if (this.count < this.capacity)
+                        {
+                        this.ring.set(this.index(this.count), msg);
+                        this.count++;
+                        }
+                    else
+                        {
+                        // Full: the new message takes the place of the oldest
+                        this.ring.set(this.first, msg);
+                        this.first = (this.first + 1) % this.capacity;
+                        }
+                    this.endWrite();
+                    }
                 this.newLogMessagesAvailable = true;
-                this.prune();
                 }
 
-            TelemetryDashboardAndLog.this.update(getUpdateIntervalMs(), false, false);
+            // When publishing asynchronously, just nudge the publisher
+            Thread publisher = TelemetryDashboardAndLog.this.publisher.get();
+            if (publisher != null)
+                LockSupport.unpark(publisher);
+            else
+                TelemetryDashboardAndLog.this.update(getUpdateIntervalMs(), false, false);
             }
 
         /**
@@ -604,24 +1027,68 @@ public class TelemetryDashboardAndLog
          */
         public void clear()
             {
-            synchronized (this.getLock())
+            synchronized (this.lock)
                 {
-                this.logQueue.clear();
+                this.beginWrite();
+                for (int i = 0; i < this.count; i++)
+                    {
+                    this.ring.set(this.index(i), null);
+                    }
+                this.first = 0;
+                this.count = 0;
+                this.endWrite();
                 this.newLogMessagesAvailable = true;
                 }
             }
 
-        private void prune()
+        /**
+         * Appends the messages of the log to the list, in display order. Takes no lock.
+         */
+        void copyTo(List<String> list)
             {
-            synchronized (this.getLock())
+            int sizeInitial = list.size();
+            for (;;)
                 {
-                while (this.logQueue.size() > this.capacity)
+                int sequence = this.sequence;
+                if ((sequence & 1) == 0)
                     {
-                    this.logQueue.remove(0);
+                    AtomicReferenceArray<String> ring = this.ring;
+                    int first = this.first;
+                    int count = this.count;
+                    boolean oldToNew = this.displayOldToNew;
+                    for (int i = 0; i < count; i++)
+                        {
+                        int iMessage = oldToNew ? i : count - 1 - i;
+                        list.add(ring.get((first + iMessage) % ring.length()));
+                        }
+                    if (sequence == this.sequence)
+                        return;
+
+                    // A writer got in our way; discard what we copied and try again
+                    while (list.size() > sizeInitial)
+                        list.remove(list.size() - 1);
                     }
+                Thread.yield();
                 }
             }
 
+        // Maps a position in the log, counting from the oldest message, to its ring index.
+        // Only to be used by writers.
+        private int index(int i)
+            {
+            return (this.first + i) % this.ring.length();
+            }
+
+        private void beginWrite()
+            {
+            this.sequence++;
+            }
+
+        private void endWrite()
+            {
+            this.sequence++;
+            }
+
         }
 
     //------------------------------------------------------------------------------------------
@@ -673,4 +1140,27 @@ public class TelemetryDashboardAndLog
             }
         }
 
+    /**
+     * A line added with addData(). Its value is formatted only when the line is composed,
+     * which, when publishing asynchronously, happens on the publisher thread.
+     */
+    static class ComposedLine
+        {
+        final String caption;
+        final Object value;
+
+        ComposedLine(String caption, Object value)
+            {
+            this.caption = caption;
+            this.value   = value;
+            }
+
+        String compose()
+            {
+            // We display both the key and the value for these, as that's what the
+            // raw telemetry does. However, we do NOT sort on the caption, as that
+            // has little utility.
+            return String.format("%s : %s", this.caption, this.value);
+            }
+        }
     }
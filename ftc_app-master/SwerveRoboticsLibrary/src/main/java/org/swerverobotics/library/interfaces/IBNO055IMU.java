@@ -2,6 +2,7 @@ package org.swerverobotics.library.interfaces;
 
 import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.hardware.I2cDevice;
+import java.io.File;
 
 /**
  * Interface API to the Adafruit 9-DOF Absolute Orientation IMU Fusion Breakout - BNO055 sensor.
@@ -57,8 +58,20 @@ public interface IBNO055IMU
         /** calibration data with which the BNO055 should be initialized */
         public byte[]           calibrationData     = null;
 
+        /** whether to remember the calibration of the sensor from one run to the next. If true,
+         * then when the sensor is closed while fully calibrated its calibration data is saved
+         * in a local file, keyed by where the sensor is attached, and that data is restored on
+         * initialization if no calibrationData is provided here. */
+        public boolean          useCalibrationCache = true;
+
+        /** the directory in which calibration data is cached. If null, the files directory
+         * of the robot controller application is used.
+         * @see #useCalibrationCache */
+        public File             calibrationCacheDirectory = null;
+
         /** the algorithm to use for integrating acceleration to produce velocity and position.
-         * If not specified, a simple but not especially effective internal algorithm will be used. */
+         * If not specified, a simple but not especially effective internal algorithm will be used.
+         * @see org.swerverobotics.library.ClassFactory#createDriftCorrectingAccelerationIntegrator() */
         public IAccelerationIntegrator accelerationIntegrationAlgorithm = null;
 
         /** the boost in thread priority to use for data acquisition. A small increase in the
@@ -66,6 +79,10 @@ public interface IBNO055IMU
          * at only a small detriment to other parts of the system. */
         public int              threadPriorityBoost = 0;
         
+        /** the number of samples retained when background sampling
+         * @see #startSampling(int) */
+        public int              sampleHistoryCapacity = 64;
+
         /** debugging aid: enable logging for this device? */
         public boolean          loggingEnabled      = false;
         /** debugging aid: the logging tag to use when logging */
@@ -78,6 +95,13 @@ public interface IBNO055IMU
      */
     void close();
 
+    /**
+     * Returns the parameters with which the sensor was most recently initialized
+     * @return the parameters with which the sensor was initialized, or null if it hasn't been
+     * @see #initialize(Parameters)
+     */
+    Parameters getParameters();
+
     //----------------------------------------------------------------------------------------------
     // Reading sensor output
     //----------------------------------------------------------------------------------------------
@@ -135,6 +159,52 @@ public interface IBNO055IMU
      */
     Quaternion          getQuaternionOrientation();
 
+    /**
+     * Returns all of the vectors reported by the sensor, decoded from as few reads of its data
+     * registers as possible. Because the data registers are contiguous, this is far cheaper than
+     * reading the vectors individually, and the vectors so returned were all sampled at (very
+     * nearly) the same time: they are read without any other client of the sensor intervening.
+     *
+     * @return  the current values of all the sensor's vectors
+     * @see Vectors
+     */
+    Vectors             readAllVectors();
+
+    /**
+     * Vectors is a snapshot of all the vectors reported by the sensor.
+     * @see #readAllVectors()
+     */
+    class Vectors
+        {
+        /** @see #getOverallAcceleration() */
+        public final Acceleration       overallAcceleration;
+        /** @see #getMagneticFieldStrength() */
+        public final MagneticFlux       magneticFieldStrength;
+        /** @see #getAngularVelocity() */
+        public final AngularVelocity    angularVelocity;
+        /** @see #getAngularOrientation() */
+        public final EulerAngles        angularOrientation;
+        /** @see #getQuaternionOrientation() */
+        public final Quaternion         quaternionOrientation;
+        /** @see #getLinearAcceleration() */
+        public final Acceleration       linearAcceleration;
+        /** @see #getGravity() */
+        public final Acceleration       gravity;
+
+        public Vectors(Acceleration overallAcceleration, MagneticFlux magneticFieldStrength,
+                       AngularVelocity angularVelocity, EulerAngles angularOrientation,
+                       Quaternion quaternionOrientation, Acceleration linearAcceleration, Acceleration gravity)
+            {
+            this.overallAcceleration   = overallAcceleration;
+            this.magneticFieldStrength = magneticFieldStrength;
+            this.angularVelocity       = angularVelocity;
+            this.angularOrientation    = angularOrientation;
+            this.quaternionOrientation = quaternionOrientation;
+            this.linearAcceleration    = linearAcceleration;
+            this.gravity               = gravity;
+            }
+        }
+
     //----------------------------------------------------------------------------------------------
     // Position and velocity management
     //----------------------------------------------------------------------------------------------
@@ -162,9 +232,11 @@ public interface IBNO055IMU
     Acceleration getAcceleration();
 
     /**
-     * Start (or re-start) a thread that continuously at intervals polls the current linear acceleration 
-     * of the sensor and integrates it to provide velocity and position information. A default polling
-     * interval of 100ms is used.
+     * Start (or re-start) integrating the linear acceleration of the sensor to provide velocity
+     * and position information. Integration is driven by the arrival of fresh acceleration data
+     * from the sensor, which is kept continuously being read while integration is in progress,
+     * and each reading is integrated using the time at which it was actually read. Every fresh
+     * reading is integrated.
      * @param initalPosition   If non-null, the current sensor position is set to this value. If
      *                         null, the current sensor position is unchanged.
      * @param initialVelocity  If non-null, the current sensor velocity is set to this value. If
@@ -176,21 +248,86 @@ public interface IBNO055IMU
 
     /**
      * As in {@link #startAccelerationIntegration(Position, Velocity)}, but provides control over
-     * the frequency which which the acceleration is polled.
+     * the frequency with which the acceleration is integrated.
      * @param initalPosition   If non-null, the current sensor position is set to this value. If
      *                         null, the current sensor position is unchanged.
      * @param initialVelocity  If non-null, the current sensor velocity is set to this value. If
      *                         null, the current sensor velocity is unchanged.
-     * @param msPollInterval   the interval to use, in milliseconds, between successive calls to {@link #getLinearAcceleration()}
+     * @param msPollInterval   the minimum interval, in milliseconds, between successive readings that
+     *                         are integrated; fresh readings arriving sooner are skipped. If zero,
+     *                         every fresh reading is integrated.
      * @see #startAccelerationIntegration(Position, Velocity, int)
      */
     void startAccelerationIntegration(Position initalPosition, Velocity initialVelocity, int msPollInterval);
 
     /**
-     * Stop the integration thread if it is currently running.
+     * Stop integrating acceleration if integration is currently in progress.
      */
     void stopAccelerationIntegration();
 
+    //----------------------------------------------------------------------------------------------
+    // Background sampling
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Start (or re-start) a thread that continuously at intervals reads the orientation, angular
+     * velocity and linear acceleration of the sensor into a history of recent samples. The
+     * samples can then be retrieved from any thread without waiting for the sensor or for
+     * each other, which the methods that read the sensor directly can't offer.
+     *
+     * @param msPollInterval    the interval to use, in milliseconds, between successive samples.
+     *                          If zero, samples are taken as fast as the sensor can provide them.
+     * @see #getLatestSample(Sample)
+     * @see #getSamplesSince(long, Sample[])
+     * @see Parameters#sampleHistoryCapacity
+     */
+    void startSampling(int msPollInterval);
+
+    /**
+     * Stop the sampling thread if it is currently running. Samples already taken remain available.
+     * @see #startSampling(int)
+     */
+    void stopSampling();
+
+    /**
+     * Retrieves the most recent sample taken by the sampling thread.
+     * @param sample    the sample into which the data is to be copied
+     * @return          whether any sample has yet been taken
+     * @see #startSampling(int)
+     */
+    boolean getLatestSample(Sample sample);
+
+    /**
+     * Retrieves the samples taken by the sampling thread strictly after the indicated time,
+     * oldest first. If there are more such samples than will fit, the most recent ones are
+     * retrieved; samples older than the history capacity are no longer available.
+     *
+     * @param nanoTime  the time on the System.nanoTime() clock after which samples are of interest
+     * @param samples   the samples into which the data is to be copied
+     * @return          the number of samples retrieved
+     * @see #startSampling(int)
+     */
+    int getSamplesSince(long nanoTime, Sample[] samples);
+
+    /**
+     * A Sample is one reading of the sensor's motion made by the sampling thread. Angles, angular
+     * rates, and accelerations are expressed in the units configured in the {@link Parameters}.
+     * Samples are mutable so that they may be reused from one retrieval to the next.
+     */
+    class Sample
+        {
+        /** the time on the System.nanoTime() clock at which the sample was read */
+        public long     nanoTime;
+        /** the absolute orientation of the sensor as Euler angles */
+        public double   heading, roll, pitch;
+        /** the absolute orientation of the sensor as a (unit) quaternion */
+        public double   quatW, quatX, quatY, quatZ;
+        /** the rate of change of the orientation of the sensor */
+        public double   rateX, rateY, rateZ;
+        /** the acceleration of the sensor due to its movement */
+        public double   accelX, accelY, accelZ;
+        }
+
     //----------------------------------------------------------------------------------------------
     // Status inquiry
     //----------------------------------------------------------------------------------------------
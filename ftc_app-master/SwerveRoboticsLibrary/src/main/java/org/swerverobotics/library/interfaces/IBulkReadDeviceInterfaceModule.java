@@ -0,0 +1,54 @@
+package org.swerverobotics.library.interfaces;
+
+/**
+ * IBulkReadDeviceInterfaceModule is implemented by device interface modules that can report
+ * the state of all of their digital channels and analog inputs at once. In a SynchronousOpMode,
+ * each read of an individual channel costs a trip to the loop thread and back; reading a
+ * snapshot costs just one such trip for all of them.
+ *
+ * <p>Device interface modules in SynchronousOpMode implement this interface. Moreover, they
+ * remember the most recent snapshot and, for the remainder of the loop() cycle in which it was
+ * taken, serve reads of individual digital channels and analog inputs from it, so that reading
+ * several of a module's sensors in a row costs no more than reading one.</p>
+ *
+ * <pre>
+ * if (module instanceof IBulkReadDeviceInterfaceModule)
+ *     ((IBulkReadDeviceInterfaceModule)module).readSnapshot(snapshot);
+ * </pre>
+ */
+public interface IBulkReadDeviceInterfaceModule
+    {
+    /**
+     * Reads the current state of the module into the indicated snapshot. Snapshots may be
+     * reused from one read to the next.
+     * @param snapshot  the snapshot into which the state is to be read
+     */
+    void readSnapshot(Snapshot snapshot);
+
+    /**
+     * A Snapshot is the state of the inputs of a device interface module at one moment.
+     */
+    class Snapshot
+        {
+        public static final int digitalChannelCount = 8;
+        public static final int analogInputCount    = 8;
+
+        /** the time on the System.nanoTime() clock at which the data was read */
+        public long             nanoTime;
+        /** the digital input states of all the digital channels, as in getDigitalInputStateByte() */
+        public int              digitalInputStateByte;
+        /** the state of each digital channel, as in getDigitalChannelState() */
+        public final boolean[]  digitalChannelState = new boolean[digitalChannelCount];
+        /** the value of each analog input, as in getAnalogInputValue() */
+        public final int[]      analogInputValue    = new int[analogInputCount];
+
+        /** Copies the contents of another snapshot into this one */
+        public void copyFrom(Snapshot him)
+            {
+            this.nanoTime              = him.nanoTime;
+            this.digitalInputStateByte = him.digitalInputStateByte;
+            System.arraycopy(him.digitalChannelState, 0, this.digitalChannelState, 0, digitalChannelCount);
+            System.arraycopy(him.analogInputValue,    0, this.analogInputValue,    0, analogInputCount);
+            }
+        }
+    }
@@ -0,0 +1,61 @@
+package org.swerverobotics.library.interfaces;
+
+import com.qualcomm.robotcore.hardware.DcMotorController;
+
+/**
+ * IBulkReadMotorController is implemented by motor controllers that can report the state of
+ * all of their motors, and of the battery, from one coherent read of the hardware. Reading a
+ * snapshot is much cheaper than calling getMotorCurrentPosition(), isBusy(), getMotorPower()
+ * and so on one at a time, and the values are guaranteed to be mutually consistent.
+ *
+ * <p>Easy modern motor controllers implement this interface. To use it, test whether the
+ * controller of a motor is an instance of it:</p>
+ *
+ * <pre>
+ * if (motor.getController() instanceof IBulkReadMotorController)
+ *     ((IBulkReadMotorController)motor.getController()).readSnapshot(snapshot);
+ * </pre>
+ *
+ * @see IEncoderVelocityEstimator
+ * @see org.swerverobotics.library.ClassFactory#createEasyMotorController
+ */
+public interface IBulkReadMotorController
+    {
+    /**
+     * Reads the current state of the controller into the indicated snapshot. Snapshots may
+     * be reused from one read to the next, so that reading need not allocate.
+     * @param snapshot  the snapshot into which the state is to be read
+     */
+    void readSnapshot(Snapshot snapshot);
+
+    /**
+     * A Snapshot is the state of a motor controller at one moment. Per-motor state is in
+     * arrays indexed by motor number, as in DcMotorController, so element zero is unused.
+     */
+    class Snapshot
+        {
+        public static final int motorFirst = 1;
+        public static final int motorLast  = 2;
+
+        /** the time on the System.nanoTime() clock at which the data was read from the controller */
+        public long                         nanoTime;
+        /** the battery voltage, in volts */
+        public double                       voltage;
+        /** the current encoder position of each motor */
+        public final int[]                  currentPosition = new int[motorLast + 1];
+        /** the target encoder position of each motor */
+        public final int[]                  targetPosition  = new int[motorLast + 1];
+        /** the run mode of each motor */
+        public final DcMotorController.RunMode[] mode       = new DcMotorController.RunMode[motorLast + 1];
+        /** whether each motor is busy, as reported by isBusy() */
+        public final boolean[]              busy            = new boolean[motorLast + 1];
+        /** the power of each motor; floating counts as zero */
+        public final double[]               power           = new double[motorLast + 1];
+        /** whether each motor is floating */
+        public final boolean[]              powerFloat      = new boolean[motorLast + 1];
+        /** the estimated velocity of each motor, in encoder ticks per second */
+        public final double[]               velocity        = new double[motorLast + 1];
+        /** the estimated acceleration of each motor, in encoder ticks per second per second */
+        public final double[]               acceleration    = new double[motorLast + 1];
+        }
+    }
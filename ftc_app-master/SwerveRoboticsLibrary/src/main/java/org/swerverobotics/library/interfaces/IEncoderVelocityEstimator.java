@@ -0,0 +1,101 @@
+package org.swerverobotics.library.interfaces;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * IEncoderVelocityEstimator estimates the velocity and acceleration of a motor from a stream
+ * of timestamped readings of its encoder. Rather than differencing the last two readings,
+ * which amplifies the quantization noise of the encoder and falls apart when two readings
+ * arrive with (nearly) the same timestamp, the estimator fits a parabola by least squares to
+ * the most recent few readings and reports the slope and curvature of that fit at the time
+ * of the newest one. The number of readings in the window trades smoothness against lag.
+ *
+ * <p>The estimate is published as an immutable object through a volatile reference, so it
+ * may be read from any thread, and reading it never blocks and never touches the hardware.</p>
+ *
+ * <p>Easy motor controllers maintain an estimator for each of their motors, fed from the
+ * encoder data they read from the hardware anyway, so no additional reads are needed. Such
+ * controllers implement {@link IVelocityEstimatingMotorController}.</p>
+ *
+ * @see org.swerverobotics.library.ClassFactory#getVelocityEstimator(DcMotor)
+ * @see org.swerverobotics.library.ClassFactory#createEncoderVelocityEstimator(int)
+ */
+public interface IEncoderVelocityEstimator
+    {
+    //----------------------------------------------------------------------------------------------
+    // Operations
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Informs the estimator of a new reading of the encoder. Readings whose timestamp is not
+     * later than that of the previous reading are ignored.
+     * @param position  the encoder position, in ticks
+     * @param nanoTime  the time on the System.nanoTime() clock at which the position was read
+     */
+    void update(int position, long nanoTime);
+
+    /**
+     * Discards all readings, such as when the encoder has been reset. The velocity and
+     * acceleration are reported as zero until enough new readings have arrived.
+     */
+    void reset();
+
+    /**
+     * Returns the most recent estimate. This never blocks.
+     * @return the most recent estimate
+     */
+    Estimate getEstimate();
+
+    /**
+     * Returns the most recently estimated velocity.
+     * @return the velocity of the encoder, in ticks per second
+     */
+    double getVelocity();
+
+    /**
+     * Returns the most recently estimated acceleration.
+     * @return the acceleration of the encoder, in ticks per second per second
+     */
+    double getAcceleration();
+
+    /**
+     * Returns the number of readings over which the estimator fits.
+     * @return the number of readings over which the estimator fits
+     */
+    int getWindowSize();
+
+    //----------------------------------------------------------------------------------------------
+    // Types
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * An Estimate is the state of the encoder as of one reading.
+     */
+    class Estimate
+        {
+        /** the encoder position of the reading, in ticks */
+        public final int    position;
+        /** the estimated velocity, in ticks per second */
+        public final double velocity;
+        /** the estimated acceleration, in ticks per second per second */
+        public final double acceleration;
+        /** the time on the System.nanoTime() clock of the reading, or zero if there has been none */
+        public final long   nanoTime;
+        /** the number of readings the estimate is based on */
+        public final int    sampleCount;
+
+        public Estimate()
+            {
+            this(0, 0, 0, 0, 0);
+            }
+
+        public Estimate(int position, double velocity, double acceleration, long nanoTime, int sampleCount)
+            {
+            this.position     = position;
+            this.velocity     = velocity;
+            this.acceleration = acceleration;
+            this.nanoTime     = nanoTime;
+            this.sampleCount  = sampleCount;
+            }
+        }
+    }
@@ -0,0 +1,51 @@
+package org.swerverobotics.library.interfaces;
+
+import com.qualcomm.robotcore.hardware.Servo;
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import java.util.Collection;
+
+/**
+ * IGroupedServoController is implemented by servo controllers that can change the positions of
+ * several servos at once. Positions are first staged, for any subset of the servos, then all
+ * committed together, so that the servos of a coordinated mechanism start moving at the same
+ * moment, and so that the controller needs only one write to the hardware rather than one per
+ * servo.
+ *
+ * <p>Easy modern servo controllers implement this interface, as do thunked servo controllers.
+ * To use it, test whether the controller of a servo is an instance of it:</p>
+ *
+ * <pre>
+ * if (servo.getController() instanceof IGroupedServoController)
+ *     {
+ *     IGroupedServoController controller = (IGroupedServoController)servo.getController();
+ *     controller.stageServoPosition(1, 0.25);
+ *     controller.stageServoPosition(2, 0.75);
+ *     controller.commitStagedServoPositions();
+ *     }
+ * </pre>
+ *
+ * @see org.swerverobotics.library.ClassFactory#createEasyServoController(OpMode, Collection)
+ */
+public interface IGroupedServoController
+    {
+    /**
+     * Stages a new position for the indicated servo. The servo doesn't move until the staged
+     * positions are committed; until then, getServoPosition() continues to report its old
+     * position. Staging a servo a second time replaces its previously staged position.
+     * @param servo     the servo channel, as in ServoController
+     * @param position  the new position of the servo, as in ServoController
+     * @see #commitStagedServoPositions()
+     */
+    void stageServoPosition(int servo, double position);
+
+    /**
+     * Moves all the servos whose positions have been staged to those positions, together, and
+     * enables PWM as setServoPosition() does. Has no effect if nothing has been staged.
+     */
+    void commitStagedServoPositions();
+
+    /**
+     * Forgets any positions which have been staged but not yet committed.
+     */
+    void discardStagedServoPositions();
+    }
@@ -27,17 +27,25 @@ import org.swerverobotics.library.*;
  * if you don't specify an explicit read window, one will be automatically created for you. But
  * it's usually worth thinking about.</p>
  *
- * <p>Three different flavors of read window are available that differ in whether they
+ * <p>Several different flavors of read window are available that differ in whether they
  * read only one time or perform repeated reads, and whether they aggressively return to reading
  * when there's no writing to do or just read when it's opportune to do so but don't on their
- * own cause underlying mode switches.</p>
+ * own cause underlying mode switches. An adaptive flavor chooses between the latter two based
+ * on the pattern of reads and writes that it actually observes.</p>
+ *
+ * <p>Rather than repeatedly polling, clients can instead subscribe to be notified each time
+ * fresh data for a set of registers is read from the device.</p>
  *
  * <p>For devices that automatically shutdown if no communication is received in a certain
  * duration, a heartbeat facility is optionally provided.</p>
  *
+ * <p>Each client keeps statistics on its bus activity, which can be retrieved with
+ * {@link #getI2cStatistics()} and shown in telemetry.</p>
+ *
  * @see ClassFactory#createI2cDeviceClient(OpMode, I2cDevice, int, boolean)
  * @see org.swerverobotics.library.interfaces.II2cDeviceClient.ReadWindow
  * @see #ensureReadWindow(ReadWindow, ReadWindow)
+ * @see #registerReadListener(ReadWindow, IReadListener)
  * @see #setHeartbeatAction(HeartbeatAction)
  */
 public interface II2cDeviceClient extends HardwareDevice
@@ -176,6 +184,57 @@ public interface II2cDeviceClient extends HardwareDevice
      */
     TimestampedData readTimeStamped(int ireg, int creg, ReadWindow readWindowNeeded, ReadWindow readWindowSet);
 
+    //----------------------------------------------------------------------------------------------
+    // Read subscriptions
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Registers a listener to be notified each time a fresh I2C read which covers the indicated
+     * set of registers lands in the read cache. This allows data to be consumed as soon as it
+     * arrives rather than having a thread repeatedly poll with {@link #read(int, int) read()}.
+     *
+     * <p>Listeners are not called on the I2C callback thread, but rather on a small dispatch
+     * thread owned by the client, so they may safely block or issue further reads and writes.
+     * If a listener falls behind, intermediate data is dropped: the listener is always handed
+     * the most recent data available when it runs, never a backlog of stale data.</p>
+     *
+     * <p>Note that registering a listener does not by itself cause any reads to occur. Typically
+     * one will also set a {@link READ_MODE#REPEAT REPEAT} read window which covers the
+     * registers of interest so that fresh data is continuously retrieved.</p>
+     *
+     * @param window    the registers of interest. Only the register range is considered; the
+     *                  read mode of the window is ignored.
+     * @param listener  the listener to notify
+     * @see #unregisterReadListener(IReadListener)
+     * @see #setReadWindow(ReadWindow)
+     */
+    void registerReadListener(ReadWindow window, IReadListener listener);
+
+    /**
+     * Unregisters a listener previously registered with {@link #registerReadListener(ReadWindow, IReadListener)}.
+     * Any notification which is already in flight may still be delivered.
+     *
+     * @param listener  the listener to unregister
+     * @see #registerReadListener(ReadWindow, IReadListener)
+     */
+    void unregisterReadListener(IReadListener listener);
+
+    /**
+     * IReadListener is the interface through which subscribers are notified of fresh read data.
+     * @see #registerReadListener(ReadWindow, IReadListener)
+     */
+    interface IReadListener
+        {
+        /**
+         * Called when fresh data for a registered set of registers has been read from the device.
+         *
+         * @param window    the window with which the listener was registered
+         * @param data      the register data for exactly that window, together with the timestamp
+         *                  at which it was read
+         */
+        void onDataRead(ReadWindow window, TimestampedData data);
+        }
+
     //----------------------------------------------------------------------------------------------
     // Writing
     //----------------------------------------------------------------------------------------------
@@ -327,6 +386,46 @@ public interface II2cDeviceClient extends HardwareDevice
         public ReadWindow   heartbeatReadWindow = null;
         }
 
+    //----------------------------------------------------------------------------------------------
+    // Scheduling
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the weight this client receives relative to the clients on the other ports of
+     * its controller when they contend for the controller's bandwidth. The default weight is one.
+     *
+     * @param weight the new scheduling weight; must be positive
+     * @see #getSchedulingWeight()
+     * @see org.swerverobotics.library.internal.I2cPortScheduler
+     */
+    void setSchedulingWeight(int weight);
+
+    /**
+     * Returns the weight this client receives relative to the clients on the other ports
+     * of its controller.
+     * @return the current scheduling weight
+     * @see #setSchedulingWeight(int)
+     */
+    int getSchedulingWeight();
+
+    /**
+     * Sets the minimum interval between the starts of successive I2C transactions of this
+     * client. This can be used to keep a device that needs only occasional refreshing from
+     * consuming bandwidth that other devices on the same controller could make better use of.
+     * The default is zero, signifying no limit.
+     *
+     * @param ms the new minimum interval, in milliseconds
+     * @see #getMinimumTransactionInterval()
+     */
+    void setMinimumTransactionInterval(int ms);
+
+    /**
+     * Returns the minimum interval between the starts of successive I2C transactions of this client.
+     * @return the current minimum interval, in milliseconds
+     * @see #setMinimumTransactionInterval(int)
+     */
+    int getMinimumTransactionInterval();
+
     //----------------------------------------------------------------------------------------------
     // Monitoring, debugging, and life cycle management
     //----------------------------------------------------------------------------------------------
@@ -359,6 +458,194 @@ public interface II2cDeviceClient extends HardwareDevice
      */
     int getI2cCycleCount();
 
+    /**
+     * Returns a summary of the decisions taken on behalf of {@link READ_MODE#ADAPTIVE ADAPTIVE}
+     * read windows.
+     *
+     * @return the current adaptive read statistics
+     * @see READ_MODE#ADAPTIVE
+     */
+    AdaptiveReadStatistics getAdaptiveReadStatistics();
+
+    /**
+     * AdaptiveReadStatistics summarizes the decisions taken on behalf of
+     * {@link READ_MODE#ADAPTIVE ADAPTIVE} read windows.
+     */
+    class AdaptiveReadStatistics
+        {
+        /** the number of writes after which we chose to eagerly switch back to read mode */
+        public int      writesFollowedBySwitchToRead;
+        /** the number of writes after which we chose to remain in write mode */
+        public int      writesFollowedByStayInWriteMode;
+        /** the number of times the policy for some window changed its mind */
+        public int      policyChanges;
+        /** for the current read window, if adaptive, the observed likelihood that a write is followed by a read */
+        public double   readAfterWriteLikelihood;
+        /** for the current read window, if adaptive, whether writes will be followed by switching back to read mode */
+        public boolean  switchToReadAfterWrite;
+        }
+
+    /**
+     * Returns a snapshot of the bus statistics that have been gathered for this client since
+     * it was created or since the statistics were last reset. These are helpful in working
+     * out where the time goes when reads or writes are slower than one would like.
+     *
+     * @return a snapshot of the current bus statistics
+     * @see #resetI2cStatistics()
+     * @see TelemetryDashboardAndLog#addI2cStatisticsLines(String, II2cDeviceClient)
+     */
+    I2cStatistics getI2cStatistics();
+
+    /**
+     * Resets the bus statistics for this client back to zero. The I2C cycle count
+     * reported by {@link #getI2cCycleCount()} is not affected.
+     * @see #getI2cStatistics()
+     */
+    void resetI2cStatistics();
+
+    /**
+     * I2cStatistics is a snapshot of the bus activity of an II2cDeviceClient.
+     * @see #getI2cStatistics()
+     */
+    class I2cStatistics
+        {
+        /** the number of portIsReady callbacks received */
+        public int      hardwareCycles;
+        /** the number of read() calls that were serviced from data already read or in the process of being read */
+        public int      readsServedFromCache;
+        /** the number of read() calls that required a new read window to be set */
+        public int      readsIssued;
+        /** the number of times the controller was asked to switch to read mode */
+        public int      readModeSwitches;
+        /** the number of times the controller was asked to switch to write mode */
+        public int      writeModeSwitches;
+        /** the number of I2C read transactions whose data was retrieved from the controller */
+        public int      i2cReads;
+        /** the number of I2C write transactions issued to the controller */
+        public int      i2cWrites;
+        /** the number of heartbeats issued */
+        public int      heartbeats;
+        /** the number of callbacks in which work was deferred at the request of the controller's scheduler */
+        public int      scheduleDeferrals;
+        /** the number of payload bytes retrieved by I2C reads */
+        public long     bytesRead;
+        /** the number of payload bytes sent by I2C writes */
+        public long     bytesWritten;
+        /** the time spent processing each portIsReady callback, including any wait for the client's lock */
+        public DurationHistogram callbackDuration = new DurationHistogram();
+        /** the time each read() call took to return, including waiting for other clients */
+        public DurationHistogram readerWait       = new DurationHistogram();
+        /** the time each write() call took to return, including waiting for other clients */
+        public DurationHistogram writerWait       = new DurationHistogram();
+
+        public I2cStatistics copy()
+            {
+            I2cStatistics result = new I2cStatistics();
+            result.hardwareCycles       = this.hardwareCycles;
+            result.readsServedFromCache = this.readsServedFromCache;
+            result.readsIssued          = this.readsIssued;
+            result.readModeSwitches     = this.readModeSwitches;
+            result.writeModeSwitches    = this.writeModeSwitches;
+            result.i2cReads             = this.i2cReads;
+            result.i2cWrites            = this.i2cWrites;
+            result.heartbeats           = this.heartbeats;
+            result.scheduleDeferrals    = this.scheduleDeferrals;
+            result.bytesRead            = this.bytesRead;
+            result.bytesWritten         = this.bytesWritten;
+            result.callbackDuration     = this.callbackDuration.copy();
+            result.readerWait           = this.readerWait.copy();
+            result.writerWait           = this.writerWait.copy();
+            return result;
+            }
+
+        @Override public String toString()
+            {
+            return String.format("cyc=%d rd(cache/issued)=%d/%d sw(r/w)=%d/%d i2c(r/w)=%d/%d bytes(r/w)=%d/%d hb=%d defer=%d cb=[%s] rdWait=[%s] wrWait=[%s]",
+                    hardwareCycles, readsServedFromCache, readsIssued, readModeSwitches, writeModeSwitches,
+                    i2cReads, i2cWrites, bytesRead, bytesWritten, heartbeats, scheduleDeferrals,
+                    callbackDuration, readerWait, writerWait);
+            }
+        }
+
+    /**
+     * DurationHistogram records a distribution of durations in buckets whose widths are
+     * successive powers of two microseconds: bucket zero counts durations of less than one
+     * microsecond, and bucket i (for i &gt; 0) counts those of at least 2^(i-1) but less
+     * than 2^i microseconds. The last bucket also counts everything larger still.
+     */
+    class DurationHistogram
+        {
+        public static final int cBucket = 24;   // last regular bucket ends at about eight seconds
+
+        /** the number of durations that fell in each bucket */
+        public long[]   buckets = new long[cBucket];
+        /** the total number of durations recorded */
+        public long     count;
+        /** the sum of all the durations recorded, in nanoseconds */
+        public long     nanosTotal;
+        /** the largest duration recorded, in nanoseconds */
+        public long     nanosMax;
+
+        public void record(long nanos)
+            {
+            if (nanos < 0) nanos = 0;
+            long us    = nanos / 1000;
+            int bucket = Math.min(cBucket - 1, 64 - Long.numberOfLeadingZeros(us));
+            this.buckets[bucket]++;
+            this.count++;
+            this.nanosTotal += nanos;
+            this.nanosMax    = Math.max(this.nanosMax, nanos);
+            }
+
+        public DurationHistogram copy()
+            {
+            DurationHistogram result = new DurationHistogram();
+            result.buckets    = this.buckets.clone();
+            result.count      = this.count;
+            result.nanosTotal = this.nanosTotal;
+            result.nanosMax   = this.nanosMax;
+            return result;
+            }
+
+        /** Returns the mean duration recorded, in milliseconds */
+        public double meanMs()
+            {
+            return this.count==0 ? 0 : (double)this.nanosTotal / this.count / 1e6;
+            }
+
+        /** Returns the largest duration recorded, in milliseconds */
+        public double maxMs()
+            {
+            return this.nanosMax / 1e6;
+            }
+
+        /**
+         * Returns an upper bound on the indicated percentile of the durations recorded, in
+         * milliseconds. The bound is only as precise as the bucket width allows.
+         * @param percentile the percentile of interest, in the range [0,100]
+         * @return an upper bound on that percentile
+         */
+        public double percentileMs(double percentile)
+            {
+            if (this.count == 0)
+                return 0;
+            long needed = (long)Math.ceil(this.count * Math.max(0, Math.min(100, percentile)) / 100.0);
+            long seen   = 0;
+            for (int i = 0; i < cBucket - 1; i++)
+                {
+                seen += this.buckets[i];
+                if (seen >= needed)
+                    return Math.min((1L << i) / 1e3, this.maxMs());
+                }
+            return this.maxMs();
+            }
+
+        @Override public String toString()
+            {
+            return String.format("n=%d avg=%.1fms p90=%.1fms max=%.1fms", count, meanMs(), percentileMs(90), maxMs());
+            }
+        }
+
     /**
      * Turn logging on or off. Logging output can be viewed using the Android Logcat tools.
      * @param enabled     whether to enable logging or not
@@ -452,7 +739,19 @@ public interface II2cDeviceClient extends HardwareDevice
          * Executing a {@link #read(int, int) read()} in this mode will always get fresh data
          * from the I2C device.
          */
-        ONLY_ONCE
+        ONLY_ONCE,
+
+        /**
+         * Continuously issue I2C reads as in {@link #REPEAT} and {@link #BALANCED}, but choose
+         * between their behaviors following a write operation based on the access pattern
+         * actually observed for the window. If writes to the device are usually followed by a
+         * read, the client transitions back to read-mode eagerly so that the read can be
+         * serviced from already-retrieved data; if writes are usually followed by further writes,
+         * the client remains in write mode and only switches back to read mode on demand.
+         *
+         * @see #getAdaptiveReadStatistics()
+         */
+        ADAPTIVE
         };
 
 
@@ -492,6 +791,11 @@ public interface II2cDeviceClient extends HardwareDevice
          * Whether a read has been issued for this window or not
          */
         private boolean readIssued;
+        /**
+         * For ADAPTIVE windows, whether having been read the window should nevertheless
+         * cause a transition back to read mode
+         */
+        private volatile boolean adaptiveSwitchToReadMode;
 
 
         /**
@@ -541,9 +845,25 @@ public interface II2cDeviceClient extends HardwareDevice
          */
         public boolean maySwitchToReadMode()
             {
-            return !this.readIssued || this.readMode == READ_MODE.REPEAT;
+            return !this.readIssued
+                    || this.readMode == READ_MODE.REPEAT
+                    || (this.readMode == READ_MODE.ADAPTIVE && this.adaptiveSwitchToReadMode);
             }
 
+        /**
+         * Returns whether an {@link READ_MODE#ADAPTIVE ADAPTIVE} window currently behaves as
+         * a {@link READ_MODE#REPEAT REPEAT} window (true) or a {@link READ_MODE#BALANCED BALANCED} one (false).
+         * @return whether an adaptive window will cause transitions back to read mode
+         */
+        public boolean getAdaptiveSwitchToReadMode() { return this.adaptiveSwitchToReadMode; }
+        /**
+         * Sets whether an {@link READ_MODE#ADAPTIVE ADAPTIVE} window is to behave as a
+         * {@link READ_MODE#REPEAT REPEAT} or a {@link READ_MODE#BALANCED BALANCED} window. This is
+         * managed automatically by the client based on observed accesses.
+         * @param switchToReadMode whether the window should cause transitions back to read mode
+         */
+        public void setAdaptiveSwitchToReadMode(boolean switchToReadMode) { this.adaptiveSwitchToReadMode = switchToReadMode; }
+
         //------------------------------------------------------------------------------------------
         // Construction
         //------------------------------------------------------------------------------------------
@@ -559,6 +879,7 @@ public interface II2cDeviceClient extends HardwareDevice
             {
             this.readMode   = readMode;
             this.readIssued = false;
+            this.adaptiveSwitchToReadMode = true;
             this.iregFirst  = iregFirst;
             this.creg       = creg;
             if (creg < 0 || creg > cregReadMax)
@@ -571,7 +892,9 @@ public interface II2cDeviceClient extends HardwareDevice
          */
         public ReadWindow freshCopy()
             {
-            return new ReadWindow(this.iregFirst, this.creg, this.readMode);
+            ReadWindow result = new ReadWindow(this.iregFirst, this.creg, this.readMode);
+            result.adaptiveSwitchToReadMode = this.adaptiveSwitchToReadMode;
+            return result;
             }
 
         //------------------------------------------------------------------------------------------
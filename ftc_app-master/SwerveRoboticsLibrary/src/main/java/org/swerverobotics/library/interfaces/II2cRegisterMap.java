@@ -0,0 +1,194 @@
+package org.swerverobotics.library.interfaces;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * II2cRegisterMap lets an I2C device driver describe the registers of its device rather than
+ * hand-coding how and when to read them. Each register is declared once, with its address, its
+ * width, how its raw value is to be scaled, how volatile it is, and how frequently it's read.
+ * From that, the map works out the fewest {@link II2cDeviceClient.ReadWindow ReadWindows} that
+ * cover all the frequently read registers, and reads each register through the window that
+ * contains it, so that reads of neighbouring registers are served from the device client's
+ * cache rather than each causing a change of window.
+ *
+ * <p>Registers that never change, or that change only when written, are read from the device
+ * at most once and thereafter served from a cache in the map.</p>
+ *
+ * <p>When several registers must be read consistently with each other, read a
+ * {@link Snapshot} containing them all with {@link #readSnapshot(Register)}, then extract
+ * each with {@link #getInt(Register, Snapshot)} or {@link #get(Register, Snapshot)}.</p>
+ *
+ * @see org.swerverobotics.library.ClassFactory#createI2cRegisterMap(II2cDeviceClient, ByteOrder, II2cDeviceClient.READ_MODE)
+ */
+public interface II2cRegisterMap
+    {
+    //----------------------------------------------------------------------------------------------
+    // Declaration
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Declares a register (or a multi-byte group of registers read as one value).
+     *
+     * @param name          a name for the register, used in diagnostics
+     * @param ireg          the address of the first byte of the register
+     * @param creg          the number of bytes in the register
+     * @param signed        whether the raw value is a two's complement signed quantity
+     * @param scale         the raw value is divided by this to produce the value returned by {@link #read(Register)}
+     * @param volatility    how the value of the register may change
+     * @param access        how often the register is read
+     * @return              the declared register
+     */
+    Register define(String name, int ireg, int creg, boolean signed, double scale, VOLATILITY volatility, ACCESS access);
+
+    /**
+     * Declares an unsigned, unscaled register.
+     * @see #define(String, int, int, boolean, double, VOLATILITY, ACCESS)
+     */
+    Register define(String name, int ireg, int creg, VOLATILITY volatility, ACCESS access);
+
+    /**
+     * Returns the read windows which the map has planned for the frequently read registers,
+     * in increasing order of address.
+     * @return the read windows the map uses
+     */
+    List<II2cDeviceClient.ReadWindow> getReadWindows();
+
+    /**
+     * Returns the device client through which the map reads and writes.
+     * @return the device client through which the map reads and writes
+     */
+    II2cDeviceClient getDeviceClient();
+
+    //----------------------------------------------------------------------------------------------
+    // Reading and writing
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the raw value of the indicated register, sign extended if the register is signed.
+     * @param register  the register to read. Must be no more than four bytes wide.
+     * @return          the raw value of the register
+     */
+    int readInt(Register register);
+
+    /**
+     * Returns the value of the indicated register, divided by its scale.
+     * @param register  the register to read. Must be no more than four bytes wide.
+     * @return          the scaled value of the register
+     */
+    double read(Register register);
+
+    /**
+     * Reads the planned read window that contains the indicated register, or just the
+     * register itself if it's in no such window, all in one go.
+     * @param register  the register of interest
+     * @return          the data read, from which this and any other registers it contains
+     *                  may be extracted
+     */
+    Snapshot readSnapshot(Register register);
+
+    /**
+     * Extracts the raw value of a register from a snapshot.
+     * @see #readInt(Register)
+     */
+    int getInt(Register register, Snapshot snapshot);
+
+    /**
+     * Extracts the scaled value of a register from a snapshot.
+     * @see #read(Register)
+     */
+    double get(Register register, Snapshot snapshot);
+
+    /**
+     * Writes a raw value to the indicated register.
+     * @param register  the register to write. Must be no more than four bytes wide.
+     * @param value     the raw value to write; excess high order bits are ignored
+     */
+    void write(Register register, int value);
+
+    /**
+     * Forgets any cached register values, such as when the device has been reset.
+     */
+    void invalidate();
+
+    //----------------------------------------------------------------------------------------------
+    // Types
+    //----------------------------------------------------------------------------------------------
+
+    /** How the value of a register may change */
+    enum VOLATILITY
+        {
+        /** the register never changes, such as a chip id. It is read at most once. */
+        CONSTANT,
+        /** the register changes only when written, as with most configuration registers. It
+         * is read at most once, and thereafter tracks what is written to it. */
+        CONFIGURATION,
+        /** the register may change at any time, as sensor data does. It is always read. */
+        VOLATILE
+        }
+
+    /** How often a register is read */
+    enum ACCESS
+        {
+        /** the register is read often; the map keeps it within a planned read window */
+        FREQUENT,
+        /** the register is read only now and then, and may be read on its own */
+        OCCASIONAL
+        }
+
+    /**
+     * A Register is a declaration of one register (or group of registers) in a register map.
+     */
+    class Register
+        {
+        public final String     name;
+        public final int        ireg;
+        public final int        creg;
+        public final boolean    signed;
+        public final double     scale;
+        public final VOLATILITY volatility;
+        public final ACCESS     access;
+
+        public Register(String name, int ireg, int creg, boolean signed, double scale, VOLATILITY volatility, ACCESS access)
+            {
+            this.name       = name;
+            this.ireg       = ireg;
+            this.creg       = creg;
+            this.signed     = signed;
+            this.scale      = scale;
+            this.volatility = volatility;
+            this.access     = access;
+            }
+
+        @Override public String toString()
+            {
+            return String.format("%s(0x%02x,%d)", name, ireg, creg);
+            }
+        }
+
+    /**
+     * A Snapshot is the contents of a contiguous range of registers as read all at one time.
+     */
+    class Snapshot
+        {
+        /** the address of the first register in the snapshot */
+        public final int    iregFirst;
+        /** the contents of the registers */
+        public final byte[] data;
+        /** the time on the System.nanoTime() clock at which the data was read */
+        public final long   nanoTime;
+
+        public Snapshot(int iregFirst, byte[] data, long nanoTime)
+            {
+            this.iregFirst = iregFirst;
+            this.data      = data;
+            this.nanoTime  = nanoTime;
+            }
+
+        /** Returns whether the indicated register is entirely contained within the snapshot */
+        public boolean contains(Register register)
+            {
+            return this.iregFirst <= register.ireg && register.ireg + register.creg <= this.iregFirst + this.data.length;
+            }
+        }
+    }
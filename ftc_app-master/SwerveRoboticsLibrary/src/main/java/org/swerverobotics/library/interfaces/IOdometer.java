@@ -0,0 +1,98 @@
+package org.swerverobotics.library.interfaces;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * IOdometer maintains an estimate of the position and heading of a robot on the field by
+ * fusing the encoders of its drive motors with the heading reported by an IMU.
+ *
+ * <p>Once started, the odometer reads the encoders and IMU at a fixed rate on a thread of its
+ * own and publishes the resulting pose, so that any number of threads can ask where the robot
+ * is without themselves talking to the hardware. Distance travelled comes from the encoders;
+ * heading comes from the IMU if there is one and from the difference in the travel of the two
+ * sides of the robot if there isn't. The pose is in a field frame of the caller's choosing,
+ * set initially (and as often as desired) with {@link #setPose(Pose)}.</p>
+ *
+ * @see org.swerverobotics.library.ClassFactory#createOdometer(OpMode, DcMotor, DcMotor, IBNO055IMU, Parameters)
+ */
+public interface IOdometer
+    {
+    //----------------------------------------------------------------------------------------------
+    // Operations
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Starts (or re-starts) the thread which tracks the robot's pose. In a SynchronousOpMode,
+     * must be called from a synchronous thread. The odometer automatically stops when the
+     * OpMode does.
+     */
+    void start();
+
+    /** Stops tracking the robot's pose. The most recent pose remains available. */
+    void stop();
+
+    /**
+     * Returns the most recently computed pose of the robot. This does not communicate with
+     * any hardware and never blocks.
+     * @return the current pose, or a pose at the origin if tracking has not yet begun
+     */
+    Pose getPose();
+
+    /**
+     * Sets the current pose of the robot, for example when the robot is placed at a known
+     * location on the field. Subsequent tracking proceeds from there.
+     * @param pose  the robot's current pose. Its timestamp is ignored.
+     */
+    void setPose(Pose pose);
+
+    //----------------------------------------------------------------------------------------------
+    // Types
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Pose is the position and heading of the robot in the plane of the field.
+     */
+    class Pose
+        {
+        /** the position of the robot, in the distance units of the odometer's {@link Parameters} */
+        public final double x;
+        public final double y;
+        /** the heading of the robot in radians, counterclockwise from the X axis */
+        public final double heading;
+        /** the time on the System.nanoTime() clock of the sensor data from which the pose was computed */
+        public final long   nanoTime;
+
+        public Pose()
+            {
+            this(0,0,0,0);
+            }
+        public Pose(double x, double y, double heading, long nanoTime)
+            {
+            this.x        = x;
+            this.y        = y;
+            this.heading  = heading;
+            this.nanoTime = nanoTime;
+            }
+        }
+
+    /**
+     * Instances of Parameters describe the geometry of the robot and how often the odometer updates.
+     */
+    class Parameters
+        {
+        /** the number of encoder ticks per unit of distance travelled by a drive wheel. Together with
+         * trackWidth, this determines the distance units in which the pose is reported. */
+        public double   ticksPerUnit        = 1440 / (4 * Math.PI);    // a 4" wheel, 1440 ticks per revolution
+
+        /** the distance between the left and right drive wheels. Used only if there is no IMU. */
+        public double   trackWidth          = 16;
+
+        /** the interval, in milliseconds, at which the pose is updated */
+        public int      msUpdateInterval    = 20;
+
+        /** whether the IMU reports heading as increasing clockwise (as the BNO055 does) rather
+         * than counterclockwise */
+        public boolean  imuHeadingIsClockwise = true;
+        }
+    }
@@ -0,0 +1,24 @@
+package org.swerverobotics.library.interfaces;
+
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+/**
+ * IVelocityEstimatingMotorController is implemented by motor controllers that estimate the
+ * velocity and acceleration of each of their motors from the encoder readings they make in
+ * the course of their normal operation. Both easy modern and easy legacy motor controllers
+ * implement this interface.
+ *
+ * <p>Estimates are in the controller's sense of direction: they are not negated for motors
+ * whose direction is set to REVERSE.</p>
+ *
+ * @see org.swerverobotics.library.ClassFactory#getVelocityEstimator(DcMotor)
+ */
+public interface IVelocityEstimatingMotorController
+    {
+    /**
+     * Returns the estimator for the indicated motor.
+     * @param motor the motor number, as in DcMotorController
+     * @return      the estimator for that motor
+     */
+    IEncoderVelocityEstimator getVelocityEstimator(int motor);
+    }
@@ -0,0 +1,114 @@
+package org.swerverobotics.library.interfaces;
+
+/**
+ * MutableVector is a timestamped vector in three-space whose components are updated in place.
+ * It is the working representation for navigation arithmetic that runs at sensor rates, such as
+ * acceleration integration: unlike the arithmetic in {@link NavUtil}, which produces a new
+ * immutable {@link Position}, {@link Velocity} or {@link Acceleration} at every step, the
+ * operations here allocate nothing. Convert to and from the immutable types at the edges.
+ *
+ * <p>All operations return the receiver so that they may be chained. MutableVector is not
+ * thread-safe; guard instances that are shared between threads.</p>
+ */
+public class MutableVector
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public double x;
+    public double y;
+    public double z;
+
+    /** the time on the System.nanoTime() clock at which the data was acquired. If no
+     * timestamp is associated with this particular set of data, this value is zero */
+    public long nanoTime;
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public MutableVector()
+        {
+        this(0,0,0,0);
+        }
+    public MutableVector(double x, double y, double z, long nanoTime)
+        {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.nanoTime = nanoTime;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Assignment and conversion
+    //----------------------------------------------------------------------------------------------
+
+    public MutableVector set(double x, double y, double z, long nanoTime)
+        {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.nanoTime = nanoTime;
+        return this;
+        }
+
+    public MutableVector set(MutableVector v)     { return set(v.x,      v.y,      v.z,      v.nanoTime); }
+    public MutableVector set(Position p)          { return set(p.x,      p.y,      p.z,      p.nanoTime); }
+    public MutableVector set(Velocity v)          { return set(v.velocX, v.velocY, v.velocZ, v.nanoTime); }
+    public MutableVector set(Acceleration a)      { return set(a.accelX, a.accelY, a.accelZ, a.nanoTime); }
+
+    public Position     toPosition()              { return new Position    (x, y, z, nanoTime); }
+    public Velocity     toVelocity()              { return new Velocity    (x, y, z, nanoTime); }
+    public Acceleration toAcceleration()          { return new Acceleration(x, y, z, nanoTime); }
+
+    //----------------------------------------------------------------------------------------------
+    // Arithmetic: as in NavUtil, timestamps combine by taking the later of the two
+    //----------------------------------------------------------------------------------------------
+
+    public MutableVector plus(MutableVector v)
+        {
+        return set(x + v.x, y + v.y, z + v.z, Math.max(nanoTime, v.nanoTime));
+        }
+
+    public MutableVector minus(MutableVector v)
+        {
+        return set(x - v.x, y - v.y, z - v.z, Math.max(nanoTime, v.nanoTime));
+        }
+
+    public MutableVector scale(double scale)
+        {
+        return set(x * scale, y * scale, z * scale, nanoTime);
+        }
+
+    /** Adds scale * v to the receiver: the in-place analog of plus(this, scale(v, scale)) */
+    public MutableVector plusScaled(MutableVector v, double scale)
+        {
+        return set(x + v.x * scale, y + v.y * scale, z + v.z * scale, Math.max(nanoTime, v.nanoTime));
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Integration
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Adds to the receiver the integral of a quantity over the interval between two samples
+     * of it, using an assumption that the mean of the two has been acting the entire interval.
+     * This is the in-place analog of plus(this, NavUtil.meanIntegrate(cur, prev)).
+     *
+     * @param cur    the current sample
+     * @param prev   the previous sample
+     * @return       the receiver
+     *
+     * @see NavUtil#meanIntegrate(Acceleration, Acceleration)
+     * @see NavUtil#meanIntegrate(Velocity, Velocity)
+     */
+    public MutableVector plusMeanIntegral(MutableVector cur, MutableVector prev)
+        {
+        double halfDuration = (cur.nanoTime - prev.nanoTime) * 0.5e-9;
+        return set(x + (cur.x + prev.x) * halfDuration,
+                   y + (cur.y + prev.y) * halfDuration,
+                   z + (cur.z + prev.z) * halfDuration,
+                   Math.max(nanoTime, cur.nanoTime));
+        }
+    }
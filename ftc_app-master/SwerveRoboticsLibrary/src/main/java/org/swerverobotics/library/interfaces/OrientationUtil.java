@@ -0,0 +1,200 @@
+package org.swerverobotics.library.interfaces;
+
+/**
+ * OrientationUtil is a collection of utilities for manipulating orientations in bulk. Rather
+ * than operating on {@link Quaternion} and {@link EulerAngles} objects, these operate on
+ * 'struct of arrays' buffers: parallel arrays of primitives, one array per component, with
+ * element i of each array together forming the i'th datum. None of these allocate, so they
+ * are suitable both for post-processing a recorded history of IMU samples and for use inside
+ * a control loop.
+ *
+ * <p>Quaternions are (w, x, y, z). Except where noted, results may be written back into the
+ * same arrays as the inputs. Angles are always in radians.</p>
+ *
+ * @see IBNO055IMU#getSamplesSince(long, IBNO055IMU.Sample[])
+ */
+public class OrientationUtil
+    {
+    //----------------------------------------------------------------------------------------------
+    // Extraction
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the quaternion orientations out of a set of samples into parallel arrays.
+     * @param samples   the samples to copy from
+     * @param count     the number of samples to copy
+     * @param w         receives the w components
+     * @param x         receives the x components
+     * @param y         receives the y components
+     * @param z         receives the z components
+     * @param nanoTime  receives the sample timestamps. May be null.
+     */
+    public static void extractQuaternions(IBNO055IMU.Sample[] samples, int count, double[] w, double[] x, double[] y, double[] z, long[] nanoTime)
+        {
+        for (int i = 0; i < count; i++)
+            {
+            IBNO055IMU.Sample sample = samples[i];
+            w[i] = sample.quatW;
+            x[i] = sample.quatX;
+            y[i] = sample.quatY;
+            z[i] = sample.quatZ;
+            if (nanoTime != null) nanoTime[i] = sample.nanoTime;
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Quaternion arithmetic
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Scales each of the indicated quaternions to unit magnitude, in place.
+     */
+    public static void normalize(double[] w, double[] x, double[] y, double[] z, int count)
+        {
+        for (int i = 0; i < count; i++)
+            {
+            double mag = Math.sqrt(w[i]*w[i] + x[i]*x[i] + y[i]*y[i] + z[i]*z[i]);
+            if (mag > 0)
+                {
+                w[i] /= mag;
+                x[i] /= mag;
+                y[i] /= mag;
+                z[i] /= mag;
+                }
+            }
+        }
+
+    /**
+     * Computes the Hamilton products a[i]*b[i] of corresponding pairs of quaternions. Composing
+     * rotations in this way first applies b[i], then a[i].
+     */
+    public static void multiply(double[] aw, double[] ax, double[] ay, double[] az,
+                                double[] bw, double[] bx, double[] by, double[] bz,
+                                double[] rw, double[] rx, double[] ry, double[] rz, int count)
+        {
+        for (int i = 0; i < count; i++)
+            {
+            double w = aw[i]*bw[i] - ax[i]*bx[i] - ay[i]*by[i] - az[i]*bz[i];
+            double x = aw[i]*bx[i] + ax[i]*bw[i] + ay[i]*bz[i] - az[i]*by[i];
+            double y = aw[i]*by[i] - ax[i]*bz[i] + ay[i]*bw[i] + az[i]*bx[i];
+            double z = aw[i]*bz[i] + ax[i]*by[i] - ay[i]*bx[i] + az[i]*bw[i];
+            rw[i] = w;
+            rx[i] = x;
+            ry[i] = y;
+            rz[i] = z;
+            }
+        }
+
+    /**
+     * Spherically interpolates between corresponding pairs of unit quaternions, taking the
+     * shorter of the two paths between them.
+     *
+     * @param t     the interpolation parameters: 0 yields a[i], 1 yields b[i]
+     */
+    public static void slerp(double[] aw, double[] ax, double[] ay, double[] az,
+                             double[] bw, double[] bx, double[] by, double[] bz,
+                             double[] t,
+                             double[] rw, double[] rx, double[] ry, double[] rz, int count)
+        {
+        for (int i = 0; i < count; i++)
+            {
+            double bwi = bw[i], bxi = bx[i], byi = by[i], bzi = bz[i];
+            double dot = aw[i]*bwi + ax[i]*bxi + ay[i]*byi + az[i]*bzi;
+
+            // q and -q are the same rotation; go the short way round
+            if (dot < 0)
+                {
+                dot = -dot;
+                bwi = -bwi; bxi = -bxi; byi = -byi; bzi = -bzi;
+                }
+
+            double scaleA, scaleB;
+            if (dot > 0.9995)
+                {
+                // Nearly coincident: sin(theta) is too small to divide by, but a linear
+                // interpolation (renormalized below) is then indistinguishable anyway
+                scaleA = 1 - t[i];
+                scaleB = t[i];
+                }
+            else
+                {
+                double theta    = Math.acos(dot);
+                double sinTheta = Math.sin(theta);
+                scaleA = Math.sin((1 - t[i]) * theta) / sinTheta;
+                scaleB = Math.sin(t[i] * theta) / sinTheta;
+                }
+
+            double w = scaleA * aw[i] + scaleB * bwi;
+            double x = scaleA * ax[i] + scaleB * bxi;
+            double y = scaleA * ay[i] + scaleB * byi;
+            double z = scaleA * az[i] + scaleB * bzi;
+            double mag = Math.sqrt(w*w + x*x + y*y + z*z);
+            rw[i] = w / mag;
+            rx[i] = x / mag;
+            ry[i] = y / mag;
+            rz[i] = z / mag;
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Conversion
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Converts unit quaternions to Euler angles in the order and sense described in
+     * {@link EulerAngles}: a right-handed rotation about Z (heading), then about Y (roll), then
+     * about X (pitch). Roll is in [-pi/2, pi/2]; heading and pitch are in [-pi, pi].
+     *
+     * <p>Note that these are the mathematical conventions, not those of the Euler angles
+     * reported by the BNO055, whose heading in particular increases clockwise.</p>
+     *
+     * @param heading   receives the rotations about Z
+     * @param roll      receives the rotations about Y
+     * @param pitch     receives the rotations about X
+     */
+    public static void toEulerAngles(double[] w, double[] x, double[] y, double[] z,
+                                     double[] heading, double[] roll, double[] pitch, int count)
+        {
+        for (int i = 0; i < count; i++)
+            {
+            double wi = w[i], xi = x[i], yi = y[i], zi = z[i];
+
+            // Clamp to guard against rounding taking us a hair outside the domain of asin
+            double sinRoll = 2 * (wi*yi - xi*zi);
+            sinRoll = Math.max(-1, Math.min(1, sinRoll));
+
+            heading[i] = Math.atan2(2 * (wi*zi + xi*yi), 1 - 2 * (yi*yi + zi*zi));
+            roll[i]    = Math.asin(sinRoll);
+            pitch[i]   = Math.atan2(2 * (wi*xi + yi*zi), 1 - 2 * (xi*xi + yi*yi));
+            }
+        }
+
+    /**
+     * Removes the discontinuities from a sequence of angles that arise from their wrapping
+     * around, in place, so that, for example, a heading that turns steadily through several
+     * revolutions increases steadily rather than repeatedly jumping back. Each angle is
+     * adjusted by a multiple of the period so as to lie within half a period of its predecessor.
+     *
+     * @param angles    the angles to unwrap
+     * @param count     the number of angles
+     * @param period    the period of the angles: 2*pi for radians, 360 for degrees
+     */
+    public static void unwrap(double[] angles, int count, double period)
+        {
+        double offset = 0;
+        for (int i = 1; i < count; i++)
+            {
+            double prev  = angles[i-1];     // already unwrapped
+            double delta = angles[i] + offset - prev;
+            if (delta > period / 2 || delta < -period / 2)
+                offset -= period * Math.floor(delta / period + 0.5);
+            angles[i] += offset;
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    private OrientationUtil() { }
+    }
@@ -5,7 +5,8 @@ import java.nio.ByteOrder;
 
 /**
  * A Quaternion can indicate an orientation in three-space without the trouble of
- * possible gimbal-lock.
+ * possible gimbal-lock. For arithmetic and conversions over many quaternions at once,
+ * see {@link OrientationUtil}.
  *
  * @see <a href="https://en.wikipedia.org/wiki/Quaternion">https://en.wikipedia.org/wiki/Quaternion</a>
  * @see <a href="https://en.wikipedia.org/wiki/Gimbal_lock">https://en.wikipedia.org/wiki/Gimbal_lock</a>
@@ -8,6 +8,8 @@ import com.qualcomm.robotcore.util.*;
 import org.swerverobotics.library.*;
 import org.swerverobotics.library.exceptions.*;
 import org.swerverobotics.library.interfaces.*;
+import java.util.Arrays;
+import java.util.EnumSet;
 
 import static org.swerverobotics.library.internal.Util.*;
 import static junit.framework.Assert.*;
@@ -33,18 +35,21 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
     private IAccelerationIntegrator accelerationAlgorithm;
 
     private final Object           startStopLock = new Object();
-    private HandshakeThreadStarter accelerationMananger;
-    private static final int       msAccelerationIntegrationStopWait = 20;
+    private volatile AccelerationListener accelerationListener; // changed only under startStopLock; non-null while integrating
+    private static final int       msSamplerStopWait                 = 20;
+    private HandshakeThreadStarter sampler;                 // guarded by startStopLock
+    private volatile BNO055SampleRing sampleRing;           // survives the stopping of the sampler
     private static final int       msAwaitChipId                     = 2000;
     private static final int       msAwaitSelfTest                   = 500;
+    private static final int       msAwaitSystemRunning              = 500;
+    private BNO055CalibrationCache calibrationCache;        // where to save our calibration on close; null if we shouldn't
 
     // We always read as much as we can when we have nothing else to do
     private static final II2cDeviceClient.READ_MODE readMode = II2cDeviceClient.READ_MODE.REPEAT;
 
-    // There is a big difference in the polling interval we see when debugging
-    // and what we see when running free. The former is ~70ms, the latter about ~15ms.
-    // That's just a bit of contextual background for the magnitude here
-    private static final int       msAccelerationIntegrationDefaultPollInterval = 100;   // so far only a guess
+    // By default we integrate every fresh acceleration the device client reads. That's about
+    // every ~15ms when running free; the dispatcher drops any data we can't keep up with.
+    private static final int       msAccelerationIntegrationDefaultPollInterval = 0;
 
     //----------------------------------------------------------------------------------------------
     // Construction
@@ -54,18 +59,29 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
      * Instantiate an AdaFruitBNO055IMU on the indicated device whose I2C address is the one indicated.
      */
     public AdaFruitBNO055IMU(OpMode context, I2cDevice i2cDevice, int i2cAddr8Bit)
+        {
+        this(context, ClassFactory.createI2cDevice(i2cDevice), i2cAddr8Bit);
+        }
+
+    /**
+     * Instantiate an AdaFruitBNO055IMU on the indicated II2cDevice, which need not be backed by
+     * real hardware (see {@link SimulatedI2cDevice}).
+     */
+    public AdaFruitBNO055IMU(OpMode context, II2cDevice i2cDevice, int i2cAddr8Bit)
         {
         this.context                = context;
 
         // We don't have the device auto-close since *we* handle the shutdown logic
-        this.deviceClient           = ClassFactory.createI2cDeviceClient(context, ClassFactory.createI2cDevice(i2cDevice), i2cAddr8Bit, false);
+        this.deviceClient           = ClassFactory.createI2cDeviceClient(context, i2cDevice, i2cAddr8Bit, false);
         this.deviceClient.setReadWindow(lowerWindow);
         this.deviceClient.arm();
 
         this.parameters            = null;
         this.currentMode           = null;
         this.accelerationAlgorithm = new NaiveAccelerationIntegrator();
-        this.accelerationMananger  = null;
+        this.accelerationListener  = null;
+        this.sampler               = null;
+        this.sampleRing            = null;
 
         RobotStateTransitionNotifier.register(context, this);
         }
@@ -83,6 +99,17 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         return result;
         }
 
+    /**
+     * Instantiate an AdaFruitBNO055IMU on the indicated II2cDevice and then initialize it with
+     * the indicated set of parameters.
+     */
+    public static IBNO055IMU create(OpMode context, II2cDevice i2cDevice, Parameters parameters)
+        {
+        IBNO055IMU result = new AdaFruitBNO055IMU(context, i2cDevice, parameters.i2cAddr8Bit.bVal);
+        result.initialize(parameters);
+        return result;
+        }
+
     @Override synchronized public boolean onUserOpModeStop()
         {
         this.close();
@@ -128,15 +155,10 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         // and ready to accept commands (this seems to be necessary after a hard power down)."
         write8(REGISTER.PAGE_ID, 0);
 
-        // Make sure we have the right device
-        byte chipId = read8(REGISTER.CHIP_ID);
-        if (chipId != bCHIP_ID_VALUE)
-            {
-            delayExtra(650);     // delay value is from from Table 0-2
-            chipId = read8(REGISTER.CHIP_ID);
-            if (chipId != bCHIP_ID_VALUE)
-                throw new UnexpectedI2CDeviceException(chipId);
-            }
+        // Make sure we have the right device. It may still be coming out of a power on
+        // reset, so we give it as long as a reset takes (Table 0-2) to answer.
+        if (!awaitChipId(650 + msExtra))
+            throw new UnexpectedI2CDeviceException(read8(REGISTER.CHIP_ID));
         
         // Make sure we are in config mode
         setSensorMode(SENSOR_MODE.CONFIG);
@@ -144,17 +166,9 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         // Reset the system, and wait for the chip id register to switch back from its reset state 
         // to the it's chip id state. This can take a very long time, some 650ms (Table 0-2, p13) 
         // perhaps. While in the reset state the chip id (and other registers) reads as 0xFF.
-        elapsed.reset();
         write8(REGISTER.SYS_TRIGGER, 0x20);
-        for (;;)
-            {
-            chipId = read8(REGISTER.CHIP_ID);
-            if (chipId == bCHIP_ID_VALUE)
-                break;
-            delayExtra(10);
-            if (milliseconds(elapsed) > msAwaitChipId)
-                throw new BNO055InitializationException(this, "failed to retrieve chip id");
-            }
+        if (!awaitChipId(msAwaitChipId))
+            throw new BNO055InitializationException(this, "failed to retrieve chip id");
         delayLoreExtra(50);
         
         // Set to normal power mode
@@ -190,20 +204,98 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         if (!selfTestSuccessful)
             throw new BNO055InitializationException(this, "self test failed");
 
-        if (this.parameters.calibrationData != null)
-            writeCalibrationData(this.parameters.calibrationData);
-
-        // Finally, enter the requested operating mode (see section 3.3)
+        // Restore calibration, from our cache if we weren't given any
+        this.calibrationCache = parameters.useCalibrationCache
+            ? new BNO055CalibrationCache(parameters.calibrationCacheDirectory, this.deviceClient.getConnectionInfo(), this.deviceClient.getI2cAddr())
+            : null;
+        byte[] calibrationData = this.parameters.calibrationData;
+        if (calibrationData == null && this.calibrationCache != null)
+            calibrationData = this.calibrationCache.load();
+        if (calibrationData != null)
+            writeCalibrationData(calibrationData);
+
+        // Finally, enter the requested operating mode (see section 3.3), and wait for
+        // the system status to report that it's running. We used to just wait a good while.
         setSensorMode(parameters.mode);
-        delayLoreExtra(200);
+        if (parameters.mode != SENSOR_MODE.CONFIG && !awaitSystemRunning(msAwaitSystemRunning))
+            log_d("system status not yet running: 0x%02x", read8(REGISTER.SYS_STAT));
+        }
+
+    /** Polls until the chip id reads as it should, returning whether it did so in time */
+    private boolean awaitChipId(int msTimeout)
+        {
+        ElapsedTime elapsed = new ElapsedTime();
+        for (;;)
+            {
+            if (read8(REGISTER.CHIP_ID) == bCHIP_ID_VALUE)
+                return true;
+            if (milliseconds(elapsed) > msTimeout)
+                return false;
+            delay(10);
+            }
+        }
+
+    /** Polls until SYS_STAT reports that the system is running (Table 4-2), returning whether it did so in time */
+    private boolean awaitSystemRunning(int msTimeout)
+        {
+        ElapsedTime elapsed = new ElapsedTime();
+        for (;;)
+            {
+            byte status = read8(REGISTER.SYS_STAT);
+            if (status == 5 /* fusion algorithm running */ || status == 6 /* running without fusion */)
+                return true;
+            if (status == 1 /* system error */ || milliseconds(elapsed) > msTimeout)
+                return false;
+            delay(5);
+            }
+        }
+
+    @Override public Parameters getParameters()
+        {
+        return this.parameters;
         }
 
     @Override public void close()
         {
         stopAccelerationIntegration();
+        stopSampling();
+        saveCalibrationToCache();
         this.deviceClient.close();
         }
 
+    // Which sensors each operating mode powers, per Table 3-3 of the BNO055 data sheet
+    private static final EnumSet<SENSOR_MODE> modesUsingAccelerometer = EnumSet.of(
+            SENSOR_MODE.ACCONLY, SENSOR_MODE.ACCMAG, SENSOR_MODE.ACCGYRO, SENSOR_MODE.AMG,
+            SENSOR_MODE.IMU, SENSOR_MODE.COMPASS, SENSOR_MODE.M4G, SENSOR_MODE.NDOF_FMC_OFF, SENSOR_MODE.NDOF);
+    private static final EnumSet<SENSOR_MODE> modesUsingMagnetometer = EnumSet.of(
+            SENSOR_MODE.MAGONLY, SENSOR_MODE.ACCMAG, SENSOR_MODE.MAGGYRO, SENSOR_MODE.AMG,
+            SENSOR_MODE.COMPASS, SENSOR_MODE.M4G, SENSOR_MODE.NDOF_FMC_OFF, SENSOR_MODE.NDOF);
+    private static final EnumSet<SENSOR_MODE> modesUsingGyro = EnumSet.of(
+            SENSOR_MODE.GYRONLY, SENSOR_MODE.ACCGYRO, SENSOR_MODE.MAGGYRO, SENSOR_MODE.AMG,
+            SENSOR_MODE.IMU, SENSOR_MODE.NDOF_FMC_OFF, SENSOR_MODE.NDOF);
+
+    /** If the sensor is now calibrated, remember that for next time */
+    private void saveCalibrationToCache()
+        {
+        BNO055CalibrationCache cache = this.calibrationCache;
+        this.calibrationCache = null;       // once is enough
+        if (cache == null || this.currentMode == null || this.currentMode == SENSOR_MODE.CONFIG)
+            return;
+        try {
+            // Only the calibration of the sensors the mode actually uses matters
+            SENSOR_MODE mode = this.currentMode;
+            if ((!modesUsingGyro.contains(mode)          || isGyroCalibrated())
+             && (!modesUsingAccelerometer.contains(mode) || isAccelerometerCalibrated())
+             && (!modesUsingMagnetometer.contains(mode)  || isMagnetometerCalibrated()))
+                cache.save(readCalibrationData());
+            }
+        catch (RuntimeException e)
+            {
+            // We're shutting down: do the best we can, but don't let that get in the way
+            log_d("unable to save calibration: %s", e);
+            }
+        }
+
     private void setSensorMode(SENSOR_MODE mode)
     /* The default operation mode after power-on is CONFIGMODE. When the user changes to another 
     operation mode, the sensors which are required in that particular sensor mode are powered, 
@@ -357,6 +449,65 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
             });
         }
 
+    /**
+     * The vector data registers (Table 4-2) span 44 bytes, too many for one read window. We split
+     * them at a vector boundary so that each half lies within one of our two primary windows:
+     * accelerometer, magnetometer and gyro in the lower, the fusion output in the upper.
+     */
+    private static final II2cDeviceClient.ReadWindow lowerVectors = newWindow(REGISTER.ACCEL_DATA_X_LSB, REGISTER.EULER_H_LSB);
+    private static final II2cDeviceClient.ReadWindow upperVectors = newWindow(REGISTER.EULER_H_LSB, REGISTER.TEMP);
+
+    public synchronized Vectors readAllVectors()
+        {
+        II2cDeviceClient.TimestampedData[] ts = this.deviceClient.executeFunctionWhileLocked(new IFunc<II2cDeviceClient.TimestampedData[]>()
+            {
+            @Override public II2cDeviceClient.TimestampedData[] value()
+                {
+                // Read first from whichever half we're currently looking at, so we switch windows at most
+                // once. If integrating, though, we need to finish in the upper half, which has the accelerations.
+                II2cDeviceClient.TimestampedData lower, upper;
+                if (accelerationListener == null && upperWindow.sameAsIncludingMode(deviceClient.getReadWindow()))
+                    {
+                    upper = readVectors(upperVectors, upperWindow);
+                    lower = readVectors(lowerVectors, lowerWindow);
+                    }
+                else
+                    {
+                    lower = readVectors(lowerVectors, lowerWindow);
+                    upper = readVectors(upperVectors, upperWindow);
+                    }
+                return new II2cDeviceClient.TimestampedData[] { lower, upper };
+                }
+            });
+
+        II2cDeviceClient.TimestampedData lower = ts[0];
+        II2cDeviceClient.TimestampedData upper = ts[1];
+        return new Vectors(
+            new Acceleration   (slice(lower, lowerVectors, REGISTER.ACCEL_DATA_X_LSB,        6), getAccelerationScale()),
+            new MagneticFlux   (slice(lower, lowerVectors, REGISTER.MAG_DATA_X_LSB,          6), getFluxScale()),
+            new AngularVelocity(slice(lower, lowerVectors, REGISTER.GYRO_DATA_X_LSB,         6), getAngularScale()),
+            new EulerAngles    (slice(upper, upperVectors, REGISTER.EULER_H_LSB,             6), getAngularScale()),
+            new Quaternion     (slice(upper, upperVectors, REGISTER.QUATERNION_DATA_W_LSB,   8), (1 << 14)),
+            new Acceleration   (slice(upper, upperVectors, REGISTER.LINEAR_ACCEL_DATA_X_LSB, 6), getAccelerationScale()),
+            new Acceleration   (slice(upper, upperVectors, REGISTER.GRAVITY_DATA_X_LSB,      6), getAccelerationScale()));
+        }
+
+    private II2cDeviceClient.TimestampedData readVectors(II2cDeviceClient.ReadWindow needed, II2cDeviceClient.ReadWindow windowToSet)
+        {
+        this.deviceClient.ensureReadWindow(needed, windowToSet);
+        return this.deviceClient.readTimeStamped(needed.getIregFirst(), needed.getCreg());
+        }
+
+    /** Extracts the data of the indicated registers from data read from the indicated window */
+    private static II2cDeviceClient.TimestampedData slice(II2cDeviceClient.TimestampedData ts, II2cDeviceClient.ReadWindow window, REGISTER regFirst, int creg)
+        {
+        II2cDeviceClient.TimestampedData result = new II2cDeviceClient.TimestampedData();
+        int ibFirst = regFirst.bVal - window.getIregFirst();
+        result.data     = Arrays.copyOfRange(ts.data, ibFirst, ibFirst + creg);
+        result.nanoTime = ts.nanoTime;
+        return result;
+        }
+
     /**
      * Return the number by which we need to divide a raw angle as read from the device in order
      * to convert it to our current angular units. See Table 3-22 of the BNO055 spec
@@ -395,7 +546,9 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
                 ensureReadWindow(new II2cDeviceClient.ReadWindow(vector.getValue(), 6, readMode));
 
                 // Read the data
-                return deviceClient.readTimeStamped(vector.getValue(), 6);
+                II2cDeviceClient.TimestampedData result = deviceClient.readTimeStamped(vector.getValue(), 6);
+                resumeIntegrationReads();
+                return result;
                 }
             });
         }
@@ -438,7 +591,7 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         }
 
     public void startAccelerationIntegration(Position initalPosition, Velocity initialVelocity, int msPollInterval)
-    // Start integrating acceleration to determine position and velocity by polling for acceleration every while
+    // Start integrating acceleration to determine position and velocity as fresh acceleration data arrives
         {
         synchronized (this.startStopLock)
             {
@@ -446,13 +599,15 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
             this.stopAccelerationIntegration();
 
             // Set the current position and velocity
-            this.accelerationAlgorithm.initialize(initalPosition, initialVelocity);
-
-            // Make a new thread on which to do the integration
-            this.accelerationMananger = new HandshakeThreadStarter("integrator", new AccelerationManager(msPollInterval));
+            synchronized (dataLock)
+                {
+                this.accelerationAlgorithm.initialize(initalPosition, initialVelocity);
+                }
 
-            // Start the whole schebang a rockin...
-            this.accelerationMananger.start();
+            // Subscribe to the acceleration data, and make sure that it's being read
+            this.accelerationListener = new AccelerationListener(msPollInterval);
+            this.deviceClient.registerReadListener(linearAccelerationWindow, this.accelerationListener);
+            resumeIntegrationReads();
             }
         }
     
@@ -460,15 +615,29 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         {
         synchronized (this.startStopLock)
             {
-            // Stop the integration thread
-            if (this.accelerationMananger != null)
+            if (this.accelerationListener != null)
                 {
-                this.accelerationMananger.stop(msAccelerationIntegrationStopWait);
-                this.accelerationMananger = null;
+                this.accelerationListener.stopped = true;
+                this.deviceClient.unregisterReadListener(this.accelerationListener);
+                this.accelerationListener = null;
                 }
             }
         }
 
+    /** The registers we subscribe to when integrating acceleration */
+    private static final II2cDeviceClient.ReadWindow linearAccelerationWindow = new II2cDeviceClient.ReadWindow(VECTOR.LINEARACCEL.getValue(), 6, readMode);
+
+    /**
+     * While integrating, we need the linear acceleration registers to be repeatedly read. If we've
+     * had to read something outside of them, we return to a window that contains them. Called
+     * after each read we make; note that the read window is left unchanged during the read itself.
+     */
+    private void resumeIntegrationReads()
+        {
+        if (this.accelerationListener != null && !this.deviceClient.getReadWindow().containsWithSameMode(linearAccelerationWindow))
+            this.deviceClient.setReadWindow(upperWindow);
+        }
+
     /**
      * NaiveAccelerationIntegrator provides a very naive implementation of
      * an acceleration integration algorithm. It just does the basic physics.
@@ -481,12 +650,18 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         // State
         //------------------------------------------------------------------------------------------
 
-        Position        position;
-        Velocity        velocity;
+        // We integrate in place, as this runs at the polling rate; immutable
+        // values are only made when someone asks for them.
+        boolean         initialized;    // until initialize(), we have no position or velocity to report
+        MutableVector   position     = new MutableVector();
+        MutableVector   velocity     = new MutableVector();
+        MutableVector   velocityPrev = new MutableVector();
+        MutableVector   accelPrev    = new MutableVector();
+        MutableVector   accelNext    = new MutableVector();
         Acceleration    acceleration;
 
-        public Position getPosition() { return this.position; }
-        public Velocity getVelocity() { return this.velocity; }
+        public Position getPosition() { return this.initialized ? this.position.toPosition() : null; }
+        public Velocity getVelocity() { return this.initialized ? this.velocity.toVelocity() : null; }
         public Acceleration getAcceleration() { return this.acceleration; }
 
         //------------------------------------------------------------------------------------------
@@ -495,8 +670,7 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
 
         NaiveAccelerationIntegrator()
             {
-            this.position = null;
-            this.velocity = null;
+            this.initialized = false;
             this.acceleration = null;
             }
 
@@ -506,8 +680,10 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
 
         @Override public void initialize(Position initialPosition, Velocity initialVelocity)
             {
-            this.position = initialPosition;
-            this.velocity = initialVelocity;
+            // Per the IBNO055IMU contract, null leaves the respective value unchanged
+            if (initialPosition != null) this.position.set(initialPosition);
+            if (initialVelocity != null) this.velocity.set(initialVelocity);
+            this.initialized  = true;
             this.acceleration = null;
             }
 
@@ -522,58 +698,174 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
             // We can only integrate if we have a previous acceleration to baseline from
             if (acceleration != null)
                 {
-                Acceleration accelPrev    = acceleration;
-                Velocity     velocityPrev = velocity;
+                this.accelPrev.set(this.accelNext);
+                this.accelNext.set(accelNext);
+                this.velocityPrev.set(this.velocity);
 
-                acceleration = accelNext;
-
-                Velocity deltaVelocity = meanIntegrate(acceleration, accelPrev);
-                velocity = plus(velocity, deltaVelocity);
-
-                Position deltaPosition = meanIntegrate(velocity, velocityPrev);
-                position = plus(position, deltaPosition);
+                this.velocity.plusMeanIntegral(this.accelNext, this.accelPrev);
+                this.position.plusMeanIntegral(this.velocity, this.velocityPrev);
                 }
             else
-                acceleration = accelNext;
+                {
+                // The timestamps of the initial position and velocity aren't significant;
+                // they're deemed to have been taken along with this, our baseline acceleration.
+                this.accelNext.set(accelNext);
+                this.velocity.nanoTime = accelNext.nanoTime;
+                this.position.nanoTime = accelNext.nanoTime;
+                }
+
+            acceleration = accelNext;
             }
         }
 
-    /** Maintains current velocity and position by integrating acceleration */
-    class AccelerationManager implements IHandshakeable
+    /**
+     * Maintains current velocity and position by integrating acceleration as the device client
+     * reports fresh readings of it. Each reading is integrated using the timestamp at which it was
+     * actually read. Runs on the device client's listener dispatch thread; no thread of our own is needed.
+     */
+    class AccelerationListener implements II2cDeviceClient.IReadListener
         {
-        private final int msPollInterval;
+        private final long      nanoMinInterval;
+        private long            nanoLastUpdate;
+        volatile boolean        stopped;        // a notification may be in flight when we unregister
         private final static long nsPerMs = 1000000;
-        
-        AccelerationManager(int msPollInterval)
+
+        AccelerationListener(int msPollInterval)
+            {
+            this.nanoMinInterval = msPollInterval * nsPerMs;
+            this.nanoLastUpdate  = 0;
+            this.stopped         = false;
+            }
+
+        @Override public void onDataRead(II2cDeviceClient.ReadWindow window, II2cDeviceClient.TimestampedData data)
+            {
+            if (this.stopped)
+                return;
+            if (this.nanoLastUpdate != 0 && data.nanoTime - this.nanoLastUpdate < this.nanoMinInterval)
+                return;
+            this.nanoLastUpdate = data.nanoTime;
+
+            final Acceleration accelNext = new Acceleration(data, getAccelerationScale());
+            synchronized (dataLock)
+                {
+                if (!this.stopped)
+                    accelerationAlgorithm.update(accelNext);
+                }
+            }
+        }
+
+    //------------------------------------------------------------------------------------------
+    // Background sampling
+    //------------------------------------------------------------------------------------------
+
+    /**
+     * The registers read by the sampler: the gyro, Euler, quaternion, and linear acceleration
+     * data are contiguous (Table 4-2), and together just fit in the largest read window we can use.
+     */
+    private static final II2cDeviceClient.ReadWindow sampleWindow = newWindow(REGISTER.GYRO_DATA_X_LSB, REGISTER.GRAVITY_DATA_X_LSB);
+
+    public void startSampling(int msPollInterval)
+        {
+        synchronized (this.startStopLock)
+            {
+            this.stopSampling();
+
+            // Keep the history we have if it's of the right size
+            int capacity = Math.max(1, this.parameters.sampleHistoryCapacity);
+            if (this.sampleRing == null || this.sampleRing.getCapacity() != capacity)
+                this.sampleRing = new BNO055SampleRing(capacity);
+
+            this.sampler = new HandshakeThreadStarter("sampler", new Sampler(msPollInterval, this.sampleRing));
+            this.sampler.start();
+            }
+        }
+
+    public void stopSampling() // as with stopAccelerationIntegration, needs a different lock than 'synchronized(this)'
+        {
+        synchronized (this.startStopLock)
+            {
+            if (this.sampler != null)
+                {
+                this.sampler.stop(msSamplerStopWait);
+                this.sampler = null;
+                }
+            }
+        }
+
+    public boolean getLatestSample(Sample sample)
+        {
+        BNO055SampleRing ring = this.sampleRing;
+        return ring != null && ring.getLatest(sample);
+        }
+
+    public int getSamplesSince(long nanoTime, Sample[] samples)
+        {
+        BNO055SampleRing ring = this.sampleRing;
+        return ring == null ? 0 : ring.getSince(nanoTime, samples);
+        }
+
+    /**
+     * Sampler reads all the motion data of the sensor in one I2C read and decodes it straight
+     * into the sample ring. Note that it synchronizes only on the device client, not on the IMU,
+     * so that it and the (synchronized) direct accessors don't hold each other up any more than
+     * sharing the device makes necessary. Nothing is allocated per sample beyond what the
+     * device client itself does.
+     */
+    class Sampler implements IHandshakeable
+        {
+        private final int               msPollInterval;
+        private final BNO055SampleRing  ring;
+        private final static long       nsPerMs = 1000000;
+
+        Sampler(int msPollInterval, BNO055SampleRing ring)
             {
             this.msPollInterval = msPollInterval;
+            this.ring           = ring;
             }
-        
+
         @Override public void run(HandshakeThreadStarter starter)
             {
-            // Let the starter know we're up and running
             starter.doHandshake();
 
-            // Don't let inappropriate exceptions sneak out
+            final double angularScale      = getAngularScale();
+            final double accelerationScale = getAccelerationScale();
+            final double quaternionScale   = 1 << 14;
+            final IFunc<II2cDeviceClient.TimestampedData> readSample = new IFunc<II2cDeviceClient.TimestampedData>()
+                {
+                @Override public II2cDeviceClient.TimestampedData value()
+                    {
+                    deviceClient.ensureReadWindow(sampleWindow, sampleWindow);
+                    return deviceClient.readTimeStamped(sampleWindow.getIregFirst(), sampleWindow.getCreg());
+                    }
+                };
+
             try
                 {
-                // Loop until we're asked to stop
                 while (!starter.isStopRequested())
                     {
-                    // Read the latest available acceleration
-                    final Acceleration accelNext = AdaFruitBNO055IMU.this.getLinearAcceleration();
+                    II2cDeviceClient.TimestampedData ts = deviceClient.executeFunctionWhileLocked(readSample);
+                    byte[] data = ts.data;
+
+                    // Offsets are relative to GYRO_DATA_X_LSB; see Table 4-2
+                    this.ring.add(ts.nanoTime,
+                            getShort(data, 6)  / angularScale,          // EULER_H
+                            getShort(data, 8)  / angularScale,          // EULER_R
+                            getShort(data, 10) / angularScale,          // EULER_P
+                            getShort(data, 12) / quaternionScale,       // QUATERNION_DATA_W
+                            getShort(data, 14) / quaternionScale,
+                            getShort(data, 16) / quaternionScale,
+                            getShort(data, 18) / quaternionScale,
+                            getShort(data, 0)  / angularScale,          // GYRO_DATA_X
+                            getShort(data, 2)  / angularScale,
+                            getShort(data, 4)  / angularScale,
+                            getShort(data, 20) / accelerationScale,     // LINEAR_ACCEL_DATA_X
+                            getShort(data, 22) / accelerationScale,
+                            getShort(data, 24) / accelerationScale);
 
-                    // Have the algorithm do its thing
-                    synchronized (dataLock)
-                        {
-                        accelerationAlgorithm.update(accelNext);
-                        }
-                    
-                    // Wait a bit before polling again
                     if (msPollInterval > 0)
                         {
-                        long msSoFar = (System.nanoTime() - accelNext.nanoTime) / nsPerMs;
-                        Thread.sleep(Math.max(0,msPollInterval - msSoFar));
+                        long msSoFar = (System.nanoTime() - ts.nanoTime) / nsPerMs;
+                        Thread.sleep(Math.max(0, msPollInterval - msSoFar));
                         }
                     else
                         Thread.yield(); // never do a hard spin
@@ -584,6 +876,12 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
                 return;
                 }
             }
+
+        private int getShort(byte[] data, int ib)
+        // The BNO055 is little endian
+            {
+            return (short)((data[ib] & 0xFF) | (data[ib+1] << 8));
+            }
         }
 
     @Override public synchronized byte read8(final REGISTER reg)
@@ -593,7 +891,9 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
             @Override public Byte value()
                 {
                 ensureReadWindow(new II2cDeviceClient.ReadWindow(reg.bVal, 1, readMode));
-                return deviceClient.read8(reg.bVal);
+                byte result = deviceClient.read8(reg.bVal);
+                resumeIntegrationReads();
+                return result;
                 }
             });
         }
@@ -605,7 +905,9 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
             @Override public byte[] value()
                 {
                 ensureReadWindow(new II2cDeviceClient.ReadWindow(reg.bVal, cb, readMode));
-                return deviceClient.read(reg.bVal, cb);
+                byte[] result = deviceClient.read(reg.bVal, cb);
+                resumeIntegrationReads();
+                return result;
                 }
             });
         }
@@ -684,22 +986,23 @@ public final class AdaFruitBNO055IMU implements IBNO055IMU, II2cDeviceClientUser
         this.deviceClient.ensureReadWindow(needed, windowToSet);
         }
 
-    // Our write logic doesn't actually know when the I2C writes are issued. All it knows is
-    // when the write has made it to the USB Core Device Interface Module. It's a pretty
-    // deterministic interval after that that the I2C write occurs, we guess, but we don't
-    // really know what that is. To account for this, we slop in some extra time to the
-    // delays so that we're not cutting things too close to the edge. And given that this is
-    // initialization logic and so not time critical, we err on being generous: the current
-    // setting of this extra can undoubtedly be reduced.
+    // Our write logic doesn't actually know when the I2C writes are issued. What it can know is
+    // when the write has made it to the USB Core Device Interface Module, so before delaying we
+    // wait for that. It's a pretty deterministic interval after that that the I2C write occurs,
+    // we guess, about a module cycle, but we don't really know what that is. To account for this,
+    // we slop in some extra time to the delays so that we're not cutting things too close to the
+    // edge. Where the sensor can tell us that it's ready, we poll for that instead of delaying.
 
-    private final static int msExtra = 50;
+    private final static int msExtra = 15;
 
     private void delayExtra(int ms)
         {
+        this.deviceClient.waitForWriteCompletions();
         delay(ms + msExtra);
         }
     private void delayLoreExtra(int ms)
         {
+        this.deviceClient.waitForWriteCompletions();
         delayLore(ms + msExtra);
         }
 
@@ -9,6 +9,8 @@ import org.swerverobotics.library.interfaces.*;
 import java.nio.ByteOrder;
 
 import static org.swerverobotics.library.internal.Util.handleCapturedInterrupt;
+import static org.swerverobotics.library.interfaces.II2cRegisterMap.VOLATILITY.*;
+import static org.swerverobotics.library.interfaces.II2cRegisterMap.ACCESS.*;
 
 /**
  * Note: this is not yet used
@@ -100,14 +102,24 @@ public class AdaFruitTCS34725ColorSensor extends ColorSensor implements IOpModeS
     public static final int TCS34725_BDATAH           = 0x1B;
 
     public static final int ADDRESS_I2C         = TCS34725_ADDRESS * 2;
-    public static final int IREG_READ_FIRST     = TCS34725_CDATAL;
+    public static final int IREG_READ_FIRST     = TCS34725_STATUS;
     public static final int IREG_READ_LAST      = TCS34725_BDATAH;
 
     final I2cDeviceClient                       i2cDeviceClient;
+    final II2cRegisterMap                       registers;
+    final II2cRegisterMap.Register              regEnable, regATime, regControl, regId;
+    final II2cRegisterMap.Register              regStatus, regClear, regRed, regGreen, regBlue;
     boolean                                     ledIsEnabled;
     boolean                                     ledStateIsKnown;
     I2cDeviceReplacementHelper<ColorSensor>     helper;
 
+    // The most recent RGBC sample. The sensor only produces a new one every integration
+    // cycle, so we only read it that often, and serve this copy in between.
+    long                                        nanoIntegrationTime;
+    boolean                                     haveSample;
+    long                                        sampleNanoTime;
+    int                                         clear, red, green, blue;
+
     //----------------------------------------------------------------------------------------------
     // Construction
     //----------------------------------------------------------------------------------------------
@@ -118,10 +130,21 @@ public class AdaFruitTCS34725ColorSensor extends ColorSensor implements IOpModeS
         this.i2cDeviceClient = i2cDeviceClient;
         this.ledIsEnabled    = false;
         this.ledStateIsKnown = false;
-
-        this.i2cDeviceClient.setReadWindow(new II2cDeviceClient.ReadWindow(
-                IREG_READ_FIRST, IREG_READ_LAST - IREG_READ_FIRST + 1,
-                II2cDeviceClient.READ_MODE.REPEAT));
+        this.haveSample      = false;
+        this.nanoIntegrationTime = 0;
+
+        // Read only when asked: continuously re-reading would mostly just fetch the same sample again
+        this.registers  = new I2cRegisterMap(i2cDeviceClient, ByteOrder.LITTLE_ENDIAN, II2cDeviceClient.READ_MODE.ONLY_ONCE);
+        this.regEnable  = registers.define("ENABLE",  TCS34725_ENABLE,  1, CONFIGURATION, OCCASIONAL);
+        this.regATime   = registers.define("ATIME",   TCS34725_ATIME,   1, CONFIGURATION, OCCASIONAL);
+        this.regControl = registers.define("CONTROL", TCS34725_CONTROL, 1, CONFIGURATION, OCCASIONAL);
+        this.regId      = registers.define("ID",      TCS34725_ID,      1, CONSTANT,      OCCASIONAL);
+        this.regStatus  = registers.define("STATUS",  TCS34725_STATUS,  1, VOLATILE,      FREQUENT);
+        this.regClear   = registers.define("CDATA",   TCS34725_CDATAL,  2, VOLATILE,      FREQUENT);
+        this.regRed     = registers.define("RDATA",   TCS34725_RDATAL,  2, VOLATILE,      FREQUENT);
+        this.regGreen   = registers.define("GDATA",   TCS34725_GDATAL,  2, VOLATILE,      FREQUENT);
+        this.regBlue    = registers.define("BDATA",   TCS34725_BDATAL,  2, VOLATILE,      FREQUENT);
+        this.i2cDeviceClient.setReadWindow(this.registers.getReadWindows().get(0));
 
         RobotStateTransitionNotifier.register(context, this);
         }
@@ -164,7 +187,9 @@ public class AdaFruitTCS34725ColorSensor extends ColorSensor implements IOpModeS
         {
         MS_2_4(0xFF), MS_24(0xF6), MS_50(0xEB), MS_101(0xD5), MS_154(0xC0), MS_700(0x00);
         public final byte byteVal;
-        INTEGRATION_TIME(int i) { this.byteVal = (byte)i; }
+        /** the duration of one RGBC integration cycle: 2.4ms per count below 256 in ATIME */
+        public final double msIntegrationTime;
+        INTEGRATION_TIME(int i) { this.byteVal = (byte)i; this.msIntegrationTime = (256 - i) * 2.4; }
         }
 
     public enum GAIN
@@ -174,21 +199,25 @@ public class AdaFruitTCS34725ColorSensor extends ColorSensor implements IOpModeS
         GAIN(int i) { this.byteVal = (byte)i; }
         }
 
-    public void initialize(Parameters parameters)
+    public synchronized void initialize(Parameters parameters)
         {
         // Verify that we're talking to whom we think we're talking to
-        byte id = this.i2cDeviceClient.read8(TCS34725_ID);
+        int id = this.registers.readInt(this.regId);
         if (id != 0x44 && id != 0x10)
             throw new UnexpectedI2CDeviceException(id);
 
         // Set the gain an integration time
-        this.i2cDeviceClient.write8(TCS34725_ATIME,   parameters.integrationTime.byteVal);
-        this.i2cDeviceClient.write8(TCS34725_CONTROL, parameters.gain.byteVal);
+        this.registers.write(this.regATime,   parameters.integrationTime.byteVal);
+        this.registers.write(this.regControl, parameters.gain.byteVal);
 
         // Enable the device
-        this.i2cDeviceClient.write8(TCS34725_ENABLE, TCS34725_ENABLE_PON);
+        this.registers.write(this.regEnable, TCS34725_ENABLE_PON);
         delayExtra(3);
-        this.i2cDeviceClient.write8(TCS34725_ENABLE, TCS34725_ENABLE_PON | TCS34725_ENABLE_AEN);
+        this.registers.write(this.regEnable, TCS34725_ENABLE_PON | TCS34725_ENABLE_AEN);
+
+        // Any sample we have predates the new configuration
+        this.nanoIntegrationTime = (long)(parameters.integrationTime.msIntegrationTime * 1000000);
+        this.haveSample = false;
         }
 
     void delayExtra(int ms)
@@ -272,41 +301,69 @@ public class AdaFruitTCS34725ColorSensor extends ColorSensor implements IOpModeS
     // ColorSensor
     //----------------------------------------------------------------------------------------------
 
-    int read8(int ireg)
+    /**
+     * Ensures that our cached sample is the most recent the sensor has produced. A read is
+     * only issued if an integration cycle has completed since the sample we have was read.
+     */
+    void refreshSample()
         {
-        byte b = this.i2cDeviceClient.read8(ireg);
-        return TypeConversion.unsignedByteToInt(b);
+        if (this.haveSample && System.nanoTime() - this.sampleNanoTime < this.nanoIntegrationTime)
+            return;
+
+        // STATUS and the RGBC data all come from one planned window, so they're mutually consistent
+        II2cRegisterMap.Snapshot snapshot = this.registers.readSnapshot(this.regStatus);
+
+        // Until the first integration cycle completes, there's nothing to be had
+        if ((this.registers.getInt(this.regStatus, snapshot) & TCS34725_STATUS_AVALID) == 0)
+            return;
+
+        this.clear          = this.registers.getInt(this.regClear, snapshot);
+        this.red            = this.registers.getInt(this.regRed,   snapshot);
+        this.green          = this.registers.getInt(this.regGreen, snapshot);
+        this.blue           = this.registers.getInt(this.regBlue,  snapshot);
+        this.sampleNanoTime = snapshot.nanoTime;
+        this.haveSample     = true;
         }
 
-    int readLH(int ireg)
+    /**
+     * Returns the time on the System.nanoTime() clock at which the sample returned by
+     * red(), green(), blue(), alpha() and argb() was read, or zero if there isn't one yet.
+     * Calls to those within one integration cycle return the same sample.
+     */
+    public synchronized long getSampleNanoTime()
         {
-        byte[] bytes = this.i2cDeviceClient.read(ireg, 2);
-        return TypeConversion.byteArrayToInt(bytes, ByteOrder.LITTLE_ENDIAN);
+        this.refreshSample();
+        return this.haveSample ? this.sampleNanoTime : 0;
         }
 
     @Override public synchronized int red()
         {
-        return this.readLH(0x16);
+        this.refreshSample();
+        return this.red;
         }
 
     @Override public synchronized int green()
         {
-        return this.readLH(0x18);
+        this.refreshSample();
+        return this.green;
         }
 
     @Override public synchronized int blue()
         {
-        return this.readLH(0x1a);
+        this.refreshSample();
+        return this.blue;
         }
 
     @Override public synchronized int alpha()
         {
-        return this.readLH(0x14);
+        this.refreshSample();
+        return this.clear;
         }
 
     @Override public synchronized int argb()
         {
-        return Color.argb(this.alpha(), this.red(), this.green(), this.blue());
+        this.refreshSample();
+        return Color.argb(this.clear, this.red, this.green, this.blue);
         }
 
     @Override public synchronized void enableLed(boolean enable)
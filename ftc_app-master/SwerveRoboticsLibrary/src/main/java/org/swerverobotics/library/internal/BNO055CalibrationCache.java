@@ -0,0 +1,129 @@
+package org.swerverobotics.library.internal;
+
+import android.content.Context;
+import android.util.Log;
+
+import org.swerverobotics.library.interfaces.*;
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * BNO055CalibrationCache persists BNO055 calibration profiles in local files so that a sensor
+ * can be restored to its previous calibration when it is next initialized rather than having
+ * to be recalibrated in place. Profiles are keyed by where the sensor is attached: the
+ * controller, port, and I2C address. All operations are best-effort: failures to read or
+ * write the cache are logged and otherwise ignored.
+ *
+ * @see IBNO055IMU.Parameters#useCalibrationCache
+ */
+public final class BNO055CalibrationCache
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final String LOGGING_TAG = "BNO055CalibrationCache";
+
+    private static final String filePrefix = "bno055-";
+    private static final String fileSuffix = ".cal";
+
+    private final File directory;
+    private final String key;
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @param directory     the directory in which profiles are stored. If null, the files directory
+     *                      of the application is used, if that can be determined.
+     * @param connectionInfo the connection info of the sensor's device client, which identifies
+     *                      its controller and port
+     * @param i2cAddr8Bit   the I2C address of the sensor
+     */
+    public BNO055CalibrationCache(File directory, String connectionInfo, int i2cAddr8Bit)
+        {
+        if (directory == null)
+            {
+            Context context = AnnotatedOpModeRegistrar.getApplicationContext();
+            directory = context == null ? null : context.getFilesDir();
+            }
+        this.directory = directory;
+        this.key       = String.format("%s-%02x", connectionInfo, i2cAddr8Bit).replaceAll("[^A-Za-z0-9]+", "_");
+        }
+
+    /** Returns the file in which our profile is kept, or null if we have nowhere to keep it */
+    public File getFile()
+        {
+        return this.directory == null ? null : new File(this.directory, filePrefix + this.key + fileSuffix);
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Operations
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the cached calibration profile, or null if there isn't one
+     * @see IBNO055IMU#readCalibrationData()
+     */
+    public byte[] load()
+        {
+        File file = getFile();
+        if (file == null || !file.exists())
+            return null;
+
+        byte[] result = new byte[IBNO055IMU.cbCalibrationData];
+        try {
+            DataInputStream input = new DataInputStream(new FileInputStream(file));
+            try {
+                input.readFully(result);
+                if (input.read() != -1)
+                    throw new IOException("calibration profile has trailing data");
+                }
+            finally
+                {
+                input.close();
+                }
+            return result;
+            }
+        catch (IOException e)
+            {
+            Log.w(LOGGING_TAG, String.format("unable to read %s: %s", file, e));
+            return null;
+            }
+        }
+
+    /**
+     * Caches the indicated calibration profile, unless it's the same as what's there already
+     * @see IBNO055IMU#readCalibrationData()
+     */
+    public void save(byte[] data)
+        {
+        File file = getFile();
+        if (file == null || data == null || data.length != IBNO055IMU.cbCalibrationData)
+            return;
+        if (Arrays.equals(data, load()))
+            return;
+
+        // Write to the side then rename, so that we never leave a partial profile behind
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream output = new FileOutputStream(temp);
+            try {
+                output.write(data);
+                output.getFD().sync();
+                }
+            finally
+                {
+                output.close();
+                }
+            if (!temp.renameTo(file))
+                throw new IOException("rename failed");
+            }
+        catch (IOException e)
+            {
+            Log.w(LOGGING_TAG, String.format("unable to write %s: %s", file, e));
+            temp.delete();
+            }
+        }
+    }
@@ -0,0 +1,202 @@
+package org.swerverobotics.library.internal;
+
+import org.swerverobotics.library.interfaces.IBNO055IMU.Sample;
+import java.util.concurrent.atomic.*;
+
+/**
+ * BNO055SampleRing is a fixed-capacity ring of the most recent IMU samples, written by one
+ * sampling thread and read concurrently by any number of others without locking.
+ *
+ * <p>All the storage is allocated up front as primitive longs (doubles are stored by their
+ * bits). Each slot carries a sequence stamp, in the manner of a seqlock: the writer marks the
+ * slot as in flux (an odd stamp) before updating it and as stable (an even stamp) after. A
+ * reader copies a slot out and then checks that the stamp is unchanged and stable; if not,
+ * the writer lapped it, and the reader tries again. The writer never waits for readers.</p>
+ */
+public final class BNO055SampleRing
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    private static final int    ifNanoTime  = 0;
+    private static final int    ifHeading   = 1;
+    private static final int    ifRoll      = 2;
+    private static final int    ifPitch     = 3;
+    private static final int    ifQuatW     = 4;
+    private static final int    ifQuatX     = 5;
+    private static final int    ifQuatY     = 6;
+    private static final int    ifQuatZ     = 7;
+    private static final int    ifRateX     = 8;
+    private static final int    ifRateY     = 9;
+    private static final int    ifRateZ     = 10;
+    private static final int    ifAccelX    = 11;
+    private static final int    ifAccelY    = 12;
+    private static final int    ifAccelZ    = 13;
+    private static final int    cField      = 14;
+
+    private final int               capacity;
+    private final AtomicLongArray   fields;         // cField longs per slot
+    private final AtomicLongArray   stamps;         // per slot: 2n+1 while sample n is being written, 2n+2 once it's complete
+    private final AtomicLong        published;      // the number of samples ever completely written
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public BNO055SampleRing(int capacity)
+        {
+        if (capacity <= 0)
+            throw new IllegalArgumentException(String.format("illegal sample ring capacity: %d", capacity));
+        this.capacity  = capacity;
+        this.fields    = new AtomicLongArray(capacity * cField);
+        this.stamps    = new AtomicLongArray(capacity);
+        this.published = new AtomicLong(0);
+        }
+
+    public int getCapacity()
+        {
+        return this.capacity;
+        }
+
+    /** Returns the number of samples that have ever been added to the ring */
+    public long getSampleCount()
+        {
+        return this.published.get();
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Writing: only ever from one thread at a time
+    //----------------------------------------------------------------------------------------------
+
+    public void add(long nanoTime,
+                    double heading, double roll, double pitch,
+                    double quatW, double quatX, double quatY, double quatZ,
+                    double rateX, double rateY, double rateZ,
+                    double accelX, double accelY, double accelZ)
+        {
+        long n      = this.published.get();
+        int  islot  = (int)(n % this.capacity);
+        int  ifBase = islot * cField;
+
+        this.stamps.set(islot, 2*n + 1);
+
+        this.fields.set(ifBase + ifNanoTime, nanoTime);
+        setDouble(ifBase + ifHeading, heading);
+        setDouble(ifBase + ifRoll,    roll);
+        setDouble(ifBase + ifPitch,   pitch);
+        setDouble(ifBase + ifQuatW,   quatW);
+        setDouble(ifBase + ifQuatX,   quatX);
+        setDouble(ifBase + ifQuatY,   quatY);
+        setDouble(ifBase + ifQuatZ,   quatZ);
+        setDouble(ifBase + ifRateX,   rateX);
+        setDouble(ifBase + ifRateY,   rateY);
+        setDouble(ifBase + ifRateZ,   rateZ);
+        setDouble(ifBase + ifAccelX,  accelX);
+        setDouble(ifBase + ifAccelY,  accelY);
+        setDouble(ifBase + ifAccelZ,  accelZ);
+
+        this.stamps.set(islot, 2*n + 2);
+        this.published.set(n + 1);
+        }
+
+    private void setDouble(int i, double value)
+        {
+        this.fields.set(i, Double.doubleToRawLongBits(value));
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Reading: from any thread
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Copies the most recent sample into the indicated sample.
+     * @return whether there was any sample to copy
+     */
+    public boolean getLatest(Sample result)
+        {
+        for (;;)
+            {
+            long count = this.published.get();
+            if (count == 0)
+                return false;
+            if (tryRead(count - 1, result))
+                return true;
+            }
+        }
+
+    /**
+     * Copies the samples taken strictly after the indicated time into the indicated array,
+     * oldest first. If there are more such samples than will fit, the most recent ones are
+     * copied. Samples that are overwritten while they are being read are skipped.
+     *
+     * @return the number of samples copied
+     */
+    public int getSince(long nanoTime, Sample[] result)
+        {
+        long count = this.published.get();
+        if (count == 0 || result.length == 0)
+            return 0;
+
+        // Find the oldest sample still in the ring that's new enough. Samples are in time order.
+        long nFirst = Math.max(0, count - Math.min(this.capacity, result.length));
+        long n      = count - 1;
+        while (n > nFirst)
+            {
+            long nanoTimeSample = nanoTimeOf(n);
+            if (nanoTimeSample == Long.MIN_VALUE || nanoTimeSample <= nanoTime)
+                break;
+            n--;
+            }
+
+        int cSample = 0;
+        for (; n < count && cSample < result.length; n++)
+            {
+            if (tryRead(n, result[cSample]) && result[cSample].nanoTime > nanoTime)
+                cSample++;
+            }
+        return cSample;
+        }
+
+    /** Returns the timestamp of sample n, or Long.MIN_VALUE if it's no longer available */
+    private long nanoTimeOf(long n)
+        {
+        int islot = (int)(n % this.capacity);
+        long stamp = this.stamps.get(islot);
+        long result = this.fields.get(islot * cField + ifNanoTime);
+        return (stamp == 2*n + 2 && this.stamps.get(islot) == stamp) ? result : Long.MIN_VALUE;
+        }
+
+    /** Attempts to copy out sample n, returning whether it was both available and consistent */
+    private boolean tryRead(long n, Sample result)
+        {
+        int islot  = (int)(n % this.capacity);
+        int ifBase = islot * cField;
+
+        long stamp = this.stamps.get(islot);
+        if (stamp != 2*n + 2)
+            return false;
+
+        result.nanoTime = this.fields.get(ifBase + ifNanoTime);
+        result.heading  = getDouble(ifBase + ifHeading);
+        result.roll     = getDouble(ifBase + ifRoll);
+        result.pitch    = getDouble(ifBase + ifPitch);
+        result.quatW    = getDouble(ifBase + ifQuatW);
+        result.quatX    = getDouble(ifBase + ifQuatX);
+        result.quatY    = getDouble(ifBase + ifQuatY);
+        result.quatZ    = getDouble(ifBase + ifQuatZ);
+        result.rateX    = getDouble(ifBase + ifRateX);
+        result.rateY    = getDouble(ifBase + ifRateY);
+        result.rateZ    = getDouble(ifBase + ifRateZ);
+        result.accelX   = getDouble(ifBase + ifAccelX);
+        result.accelY   = getDouble(ifBase + ifAccelY);
+        result.accelZ   = getDouble(ifBase + ifAccelZ);
+
+        return this.stamps.get(islot) == stamp;
+        }
+
+    private double getDouble(int i)
+        {
+        return Double.longBitsToDouble(this.fields.get(i));
+        }
+    }
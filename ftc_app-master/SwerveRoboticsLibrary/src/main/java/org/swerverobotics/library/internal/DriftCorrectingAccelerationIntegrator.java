@@ -0,0 +1,245 @@
+package org.swerverobotics.library.internal;
+
+import org.swerverobotics.library.BuildConfig;
+import org.swerverobotics.library.interfaces.*;
+
+import static junit.framework.Assert.*;
+
+/**
+ * DriftCorrectingAccelerationIntegrator is an acceleration integration algorithm that works
+ * harder than the naive one to keep velocity and position from drifting away.
+ *
+ * <p>First, it integrates more accurately between samples. Acceleration is modelled as varying
+ * linearly over each sample interval; velocity is then updated by the trapezoidal rule and
+ * position by the exact integral of that model (p += v0*dt + (a0/3 + a1/6)*dt^2), which is
+ * equivalent to a second order Runge-Kutta step. The error per step thus shrinks much faster
+ * with the poll interval than that of the naive algorithm, so longer intervals can be used.</p>
+ *
+ * <p>Second, it detects when the sensor is stationary, which it deems to be when both the
+ * acceleration and its change from one sample to the next have remained small for a while.
+ * Until the bias of the sensor has been estimated, the acceleration itself can't be judged,
+ * so only its change from sample to sample is considered.
+ * Whenever stationary, it applies a zero velocity update, setting velocity to zero, and
+ * position thus stops changing. That bounds the drift that accumulates to that of the
+ * intervals between stops.</p>
+ *
+ * <p>Third, while stationary, the acceleration ought to be zero, so what is observed is taken
+ * to be sensor bias. The bias is first estimated as the mean acceleration over the first
+ * stationary period, then tracked with a low pass filter, and is subtracted from all the
+ * accelerations integrated thereafter.</p>
+ *
+ * <p>Note that a robot cruising perfectly smoothly at constant velocity is indistinguishable
+ * here from one that is stationary. In practice, the vibration of a moving robot keeps it from
+ * being deemed stationary; the thresholds can be adjusted to suit.</p>
+ *
+ * <p>As with other integrators, instances are not internally synchronized.</p>
+ *
+ * @see org.swerverobotics.library.ClassFactory#createDriftCorrectingAccelerationIntegrator()
+ */
+public class DriftCorrectingAccelerationIntegrator implements IAccelerationIntegrator
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final double  stationaryThresholdDefault      = 0.2;     // m/s^2
+    public static final int     msStationaryDefault             = 300;
+    public static final double  biasTimeConstantDefault         = 2.0;     // seconds
+
+    private final double        stationaryThreshold;    // in the acceleration units of the sensor
+    private final long          nanoStationary;         // how long quiescence must last to be deemed stationary
+    private final double        biasTimeConstant;       // in seconds
+
+    private boolean             initialized;
+    private boolean             haveAcceleration;
+    private final MutableVector position        = new MutableVector();
+    private final MutableVector velocity        = new MutableVector();
+    private final MutableVector acceleration    = new MutableVector();  // bias corrected
+    private final MutableVector bias            = new MutableVector();
+    private boolean             haveBias;               // has the bias been estimated yet?
+    private long                nanoQuiescent;          // how long we've been quiescent
+    private double              quiescentSumX, quiescentSumY, quiescentSumZ;   // of the raw accelerations while quiescent
+    private int                 quiescentCount;
+    private boolean             stationary;
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public DriftCorrectingAccelerationIntegrator()
+        {
+        this(stationaryThresholdDefault, msStationaryDefault, biasTimeConstantDefault);
+        }
+
+    /**
+     * @param stationaryThreshold   the magnitude, in the acceleration units of the sensor, below which
+     *                              both acceleration and its change between samples must remain
+     *                              for the sensor to be deemed stationary
+     * @param msStationary          the time for which that must hold, in milliseconds
+     * @param biasTimeConstant      the time constant, in seconds, of the filter that estimates bias
+     */
+    public DriftCorrectingAccelerationIntegrator(double stationaryThreshold, int msStationary, double biasTimeConstant)
+        {
+        this.stationaryThreshold = stationaryThreshold;
+        this.nanoStationary      = msStationary * 1000000L;
+        this.biasTimeConstant    = biasTimeConstant;
+        this.initialized         = false;
+        this.haveAcceleration    = false;
+        this.haveBias            = false;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Accessing
+    //----------------------------------------------------------------------------------------------
+
+    @Override public Position getPosition()
+        {
+        return this.initialized ? this.position.toPosition() : null;
+        }
+
+    @Override public Velocity getVelocity()
+        {
+        return this.initialized ? this.velocity.toVelocity() : null;
+        }
+
+    /** Returns the most recent acceleration, corrected for the estimated bias */
+    @Override public Acceleration getAcceleration()
+        {
+        return this.haveAcceleration ? this.acceleration.toAcceleration() : null;
+        }
+
+    /** Returns the current estimate of the bias of the accelerometer */
+    public Acceleration getBias()
+        {
+        return this.bias.toAcceleration();
+        }
+
+    /** Returns whether the sensor was deemed stationary as of the most recent update */
+    public boolean isStationary()
+        {
+        return this.stationary;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Operations
+    //----------------------------------------------------------------------------------------------
+
+    @Override public void initialize(Position initialPosition, Velocity initialVelocity)
+        {
+        // Per the IBNO055IMU contract, null leaves the respective value unchanged
+        if (initialPosition != null) this.position.set(initialPosition);
+        if (initialVelocity != null) this.velocity.set(initialVelocity);
+        this.initialized = true;
+        // The bias estimate remains valid, as it's a property of the sensor
+        this.haveAcceleration = false;
+        this.nanoQuiescent    = 0;
+        this.quiescentSumX    = this.quiescentSumY = this.quiescentSumZ = 0;
+        this.quiescentCount   = 0;
+        this.stationary       = false;
+        }
+
+    @Override public void update(Acceleration accelNext)
+        {
+        // We should always be given a timestamp here
+        assertTrue(!BuildConfig.DEBUG || accelNext.nanoTime != 0);
+
+        if (!this.haveAcceleration)
+            {
+            // This is our baseline. As documented, the timestamps of the initial position
+            // and velocity aren't significant; they're deemed to be taken along with this.
+            this.acceleration.set(accelNext.accelX - bias.x, accelNext.accelY - bias.y, accelNext.accelZ - bias.z, accelNext.nanoTime);
+            this.position.nanoTime = accelNext.nanoTime;
+            this.velocity.nanoTime = accelNext.nanoTime;
+            this.haveAcceleration  = true;
+            return;
+            }
+
+        long nanoDelta = accelNext.nanoTime - this.acceleration.nanoTime;
+        if (nanoDelta <= 0)
+            return;     // nothing new
+        double dt = nanoDelta * 1e-9;
+
+        // The previous (corrected) acceleration
+        double ax0 = this.acceleration.x;
+        double ay0 = this.acceleration.y;
+        double az0 = this.acceleration.z;
+
+        // The current one
+        double ax1 = accelNext.accelX - bias.x;
+        double ay1 = accelNext.accelY - bias.y;
+        double az1 = accelNext.accelZ - bias.z;
+
+        // Are we sitting still? Until we know the bias, the magnitude of the acceleration tells
+        // us nothing, so we can go only by how much it changes.
+        boolean quiescent = magnitude(ax1-ax0, ay1-ay0, az1-az0) < this.stationaryThreshold
+                         && (!this.haveBias || magnitude(ax1, ay1, az1) < this.stationaryThreshold);
+        if (quiescent)
+            {
+            this.nanoQuiescent  += nanoDelta;
+            this.quiescentSumX  += accelNext.accelX;
+            this.quiescentSumY  += accelNext.accelY;
+            this.quiescentSumZ  += accelNext.accelZ;
+            this.quiescentCount++;
+            }
+        else
+            {
+            this.nanoQuiescent  = 0;
+            this.quiescentSumX  = this.quiescentSumY = this.quiescentSumZ = 0;
+            this.quiescentCount = 0;
+            }
+        this.stationary = this.nanoQuiescent >= this.nanoStationary;
+
+        if (this.stationary)
+            {
+            // Whatever acceleration we see now is bias. Seed our estimate of that with the mean
+            // over the quiescent period, then track it with a simple low pass filter.
+            if (!this.haveBias)
+                {
+                this.bias.set(
+                        this.quiescentSumX / this.quiescentCount,
+                        this.quiescentSumY / this.quiescentCount,
+                        this.quiescentSumZ / this.quiescentCount,
+                        accelNext.nanoTime);
+                this.haveBias = true;
+                }
+            else
+                {
+                double alpha = dt / (this.biasTimeConstant + dt);
+                this.bias.set(
+                        bias.x + alpha * (accelNext.accelX - bias.x),
+                        bias.y + alpha * (accelNext.accelY - bias.y),
+                        bias.z + alpha * (accelNext.accelZ - bias.z),
+                        accelNext.nanoTime);
+                }
+            ax1 = accelNext.accelX - bias.x;
+            ay1 = accelNext.accelY - bias.y;
+            az1 = accelNext.accelZ - bias.z;
+
+            // Zero velocity update. Position thus stays where it is.
+            this.velocity.set(0, 0, 0, accelNext.nanoTime);
+            this.position.nanoTime = accelNext.nanoTime;
+            }
+        else if (this.initialized)
+            {
+            // Acceleration is modelled as linear across the interval
+            double dt2 = dt * dt;
+            this.position.set(
+                    position.x + velocity.x * dt + (ax0 / 3 + ax1 / 6) * dt2,
+                    position.y + velocity.y * dt + (ay0 / 3 + ay1 / 6) * dt2,
+                    position.z + velocity.z * dt + (az0 / 3 + az1 / 6) * dt2,
+                    accelNext.nanoTime);
+            this.velocity.set(
+                    velocity.x + (ax0 + ax1) * 0.5 * dt,
+                    velocity.y + (ay0 + ay1) * 0.5 * dt,
+                    velocity.z + (az0 + az1) * 0.5 * dt,
+                    accelNext.nanoTime);
+            }
+
+        this.acceleration.set(ax1, ay1, az1, accelNext.nanoTime);
+        }
+
+    private static double magnitude(double x, double y, double z)
+        {
+        return Math.sqrt(x*x + y*y + z*z);
+        }
+    }
@@ -9,6 +9,7 @@ import org.swerverobotics.library.*;
 import org.swerverobotics.library.exceptions.*;
 import org.swerverobotics.library.interfaces.*;
 import java.nio.*;
+import java.util.Arrays;
 
 import static junit.framework.Assert.*;
 import static org.swerverobotics.library.internal.ThunkingHardwareFactory.*;
@@ -16,10 +17,21 @@ import static org.swerverobotics.library.internal.ThunkingHardwareFactory.*;
 /**
  * An alternative implementation of a Legacy DC Motor controller.
  *
+ * <p>Switching an NXT controller between reading and writing costs whole hardware cycles, so
+ * reads and writes that are simply issued as they arrive make it thrash between modes. Here,
+ * instead, the controller spends most of its time reading: one read window covers everything
+ * of interest on both channels, so all reads are served from it. Writes are held in a shadow of
+ * the writable registers and go out together, in as few I2C writes as possible, once the
+ * controller has completed a configurable number of read cycles since the last write phase.
+ * Reads of registers with writes still pending see the pending values.</p>
+ *
+ * <p>Each read cycle also feeds the encoder positions it returns to per-motor velocity
+ * estimators, which thus cost nothing further in bus traffic.</p>
+ *
  * @see org.swerverobotics.library.ClassFactory#createEasyLegacyMotorController(OpMode, DcMotor, DcMotor)
  * @see org.swerverobotics.library.SynchronousOpMode#useExperimentalThunking
  */
-public final class EasyLegacyMotorController implements DcMotorController, IThunkWrapper<DcMotorController>, VoltageSensor, IOpModeStateTransitionEvents
+public final class EasyLegacyMotorController implements DcMotorController, IThunkWrapper<DcMotorController>, VoltageSensor, IOpModeStateTransitionEvents, IVelocityEstimatingMotorController
     {
     //----------------------------------------------------------------------------------------------
     // State
@@ -55,6 +67,8 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
      */
     private static final int iRegWindowFirst = 0x40;
     private static final int iRegWindowMax   = 0x56;  // first register not included
+    private static final int iRegShadowFirst = 0x40;  // the writable registers: targets, modes and powers
+    private static final int iRegShadowMax   = 0x4C;  // first register not included
     
     // motor numbers are 1-based
     private static final byte[] mpMotorRegMotorPower          = new byte[]{(byte)-1, (byte)0x45, (byte)0x46};
@@ -82,6 +96,19 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
     private       DcMotor                   motor1;
     private       DcMotor                   motor2;
 
+    /** the default number of read cycles the controller completes between write phases */
+    public static final int readCyclesPerWriteDefault = 1;
+
+    private final II2cDeviceClient.ReadWindow   readWindow;
+    private final Object                        shadowLock  = new Object();  // guards the write shadow. Acquired after 'this'.
+    private final byte[]                        shadow      = new byte[iRegShadowMax - iRegShadowFirst];
+    private final boolean[]                     pending     = new boolean[iRegShadowMax - iRegShadowFirst];
+    private boolean                             anyPending;
+    private int                                 readCyclesPerWrite;
+    private int                                 readCyclesSinceWrite;
+    private final II2cDeviceClient.IReadListener readCycleListener;
+    private final IEncoderVelocityEstimator[]   velocityEstimators;     // indexed by motor
+
     //----------------------------------------------------------------------------------------------
     // Construction
     //----------------------------------------------------------------------------------------------
@@ -97,6 +124,18 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         this.target          = target;
         this.motor1          = null;
         this.motor2          = null;
+        this.anyPending      = false;
+        this.readCyclesPerWrite   = readCyclesPerWriteDefault;
+        this.readCyclesSinceWrite = 0;
+        this.velocityEstimators   = new IEncoderVelocityEstimator[] { null, new EncoderVelocityEstimator(), new EncoderVelocityEstimator() };
+        this.readCycleListener = new II2cDeviceClient.IReadListener()
+            {
+            @Override public void onDataRead(II2cDeviceClient.ReadWindow window, II2cDeviceClient.TimestampedData data)
+                {
+                updateVelocityEstimators(data);
+                onReadCycle();
+                }
+            };
 
         RobotStateTransitionNotifier.register(context, this);
 
@@ -113,13 +152,13 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         this.i2cDeviceClient.setHeartbeatAction(heartbeatAction);
         this.i2cDeviceClient.setHeartbeatInterval(2000);
 
-        // Also: set up a read-window. We make it BALANCED to avoid unnecessary ping-ponging
-        // between read mode and write mode, since motors are read about as much as they are
-        // written, but we make it relatively large so that least that when we DO go
-        // into read mode and possibly do more than one read we will use this window
-        // and won't have to fiddle with the 'switch to read mode' each and every time.
-        // We include everything from the 'Motor 1 target encoder value' through the battery voltage.
-        this.i2cDeviceClient.setReadWindow(new II2cDeviceClient.ReadWindow(iRegWindowFirst, iRegWindowMax-iRegWindowFirst, II2cDeviceClient.READ_MODE.BALANCED));
+        // Also: set up a read-window. We make it REPEAT so that the controller returns to reading
+        // after each write phase and keeps the data fresh; it's our write scheduling, not the
+        // window, that keeps us from ping-ponging between read mode and write mode. We include
+        // everything from the 'Motor 1 target encoder value' through the battery voltage, so
+        // that one window serves every read we make.
+        this.readWindow = new II2cDeviceClient.ReadWindow(iRegWindowFirst, iRegWindowMax-iRegWindowFirst, II2cDeviceClient.READ_MODE.REPEAT);
+        this.i2cDeviceClient.setReadWindow(this.readWindow);
         }
 
     public static DcMotorController create(OpMode context, DcMotorController target, DcMotor motor1, DcMotor motor2)
@@ -219,6 +258,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
             this.helper.arm();
 
             this.i2cDeviceClient.arm();
+            this.i2cDeviceClient.registerReadListener(this.readWindow, this.readCycleListener);
             this.registerVoltageSensor();
             this.initPID();
             this.floatMotors();
@@ -234,6 +274,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         if (this.isArmed())
             {
             this.unregisterVoltageSensor();
+            this.i2cDeviceClient.unregisterReadListener(this.readCycleListener);
             this.i2cDeviceClient.disarm();
 
             this.helper.disarm();
@@ -259,7 +300,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         {
         try {
             // Register is per the HiTechnic motor controller specification
-            byte[] bytes = this.i2cDeviceClient.read(0x54, 2);
+            byte[] bytes = this.read(0x54, 2);
 
             // "The high byte is the upper 8 bits of a 10 bit value. It may be used as an 8 bit
             // representation of the battery voltage in units of 80mV. This provides a measurement
@@ -361,9 +402,13 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         // and we only ever use the lowest two as non zero.
         this.write8(mpMotorRegMotorMode[motor], bNewMode);
 
+        // Mode changes are rare and callers expect them to take effect now, so
+        // we don't wait for the next write phase
+        this.flushWrites();
+
         // The mode switch doesn't happen instantaneously. Wait for it,
         // so that the programmer's model is that he just needs to set the
-        // mode and be done.
+        // mode and be done. We look at the hardware here, not at what's pending.
         for (;;)
             {
             byte bCurrentMode = this.i2cDeviceClient.read8(mpMotorRegMotorMode[motor]);
@@ -387,7 +432,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         if (mode == RunMode.RESET_ENCODERS)
             {
             // Unclear if this is needed
-            while (this.getMotorTargetPosition(motor) != 0)
+            while (TypeConversion.byteArrayToInt(this.i2cDeviceClient.read(mpMotorRegTargetEncoderValue[motor], cbEncoder), ByteOrder.BIG_ENDIAN) != 0)
                 {
                 Thread.yield();
                 }
@@ -408,7 +453,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
     @Override public synchronized DcMotorController.RunMode getMotorChannelMode(int motor)
         {
         this.validateMotor(motor);
-        byte b = this.i2cDeviceClient.read8(mpMotorRegMotorMode[motor]);
+        byte b = this.read8(mpMotorRegMotorMode[motor]);
         return modeFromByte(b);
         }
 
@@ -455,7 +500,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
     @Override public synchronized double getMotorPower(int motor)
         {
         this.validateMotor(motor);
-        byte bPower = this.i2cDeviceClient.read8(mpMotorRegMotorMode[motor]);
+        byte bPower = this.read8(mpMotorRegMotorPower[motor]);
         
         // Float counts as zero power
         if (bPower == bPowerFloat)
@@ -477,7 +522,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
     @Override public synchronized boolean getMotorPowerFloat(int motor)
         {
         this.validateMotor(motor);
-        byte bPower = this.i2cDeviceClient.read8(mpMotorRegMotorMode[motor]);
+        byte bPower = this.read8(mpMotorRegMotorPower[motor]);
         return bPower == bPowerFloat;
         }
 
@@ -491,33 +536,170 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
     @Override public synchronized int getMotorTargetPosition(int motor)
         {
         this.validateMotor(motor);
-        byte[] bytes = this.i2cDeviceClient.read(mpMotorRegTargetEncoderValue[motor], cbEncoder);
+        byte[] bytes = this.read(mpMotorRegTargetEncoderValue[motor], cbEncoder);
         return TypeConversion.byteArrayToInt(bytes, ByteOrder.BIG_ENDIAN);
         }
 
     @Override public synchronized int getMotorCurrentPosition(int motor)
         {
         this.validateMotor(motor);
-        byte[] bytes = this.i2cDeviceClient.read(mpMotorRegCurrentEncoderValue[motor], cbEncoder);
+        byte[] bytes = this.read(mpMotorRegCurrentEncoderValue[motor], cbEncoder);
         return TypeConversion.byteArrayToInt(bytes, ByteOrder.BIG_ENDIAN);
         }
     
     //----------------------------------------------------------------------------------------------
-    // DcMotorController utility
+    // IVelocityEstimatingMotorController
+    //----------------------------------------------------------------------------------------------
+
+    @Override public IEncoderVelocityEstimator getVelocityEstimator(int motor)
+        {
+        this.validateMotor(motor);
+        return this.velocityEstimators[motor];
+        }
+
+    private void updateVelocityEstimators(II2cDeviceClient.TimestampedData data)
+        {
+        for (int motor = motorFirst; motor <= motorLast; motor++)
+            {
+            // While resetting, the encoder jumps to zero; that's not motion
+            if (modeFromByte(data.data[mpMotorRegMotorMode[motor] - iRegWindowFirst]) == RunMode.RESET_ENCODERS)
+                {
+                this.velocityEstimators[motor].reset();
+                }
+            else
+                {
+                int ib = mpMotorRegCurrentEncoderValue[motor] - iRegWindowFirst;
+                int position = ((data.data[ib] & 0xFF) << 24) | ((data.data[ib+1] & 0xFF) << 16) | ((data.data[ib+2] & 0xFF) << 8) | (data.data[ib+3] & 0xFF);
+                this.velocityEstimators[motor].update(position, data.nanoTime);
+                }
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Read / write scheduling
     //----------------------------------------------------------------------------------------------
 
+    /**
+     * Sets the number of read cycles the controller is to complete between one write phase
+     * and the next. Larger values favor reads; zero issues writes as soon as they're made.
+     * @param readCyclesPerWrite the number of read cycles between write phases
+     */
+    public void setReadCyclesPerWrite(int readCyclesPerWrite)
+        {
+        if (readCyclesPerWrite < 0)
+            throw new IllegalArgumentException(String.format("invalid read cycle count: %d", readCyclesPerWrite));
+        synchronized (this.shadowLock)
+            {
+            this.readCyclesPerWrite = readCyclesPerWrite;
+            this.flushWritesIfDue();
+            }
+        }
+
+    public int getReadCyclesPerWrite()
+        {
+        synchronized (this.shadowLock)
+            {
+            return this.readCyclesPerWrite;
+            }
+        }
+
+    private void onReadCycle()
+        {
+        synchronized (this.shadowLock)
+            {
+            this.readCyclesSinceWrite++;
+            this.flushWritesIfDue();
+            }
+        }
+
     private void write8(int ireg, byte data)
         {
-        if (this.isArmed())
-            this.i2cDeviceClient.write8(ireg, data, false);
+        this.write(ireg, new byte[] { data });
         }
 
     private void write(int ireg, byte[] data)
         {
         if (this.isArmed())
-            this.i2cDeviceClient.write(ireg, data, false);
+            {
+            assertTrue(!BuildConfig.DEBUG || (ireg >= iRegShadowFirst && ireg + data.length <= iRegShadowMax));
+            synchronized (this.shadowLock)
+                {
+                for (int ib = 0; ib < data.length; ib++)
+                    {
+                    this.shadow[ireg - iRegShadowFirst + ib]  = data[ib];
+                    this.pending[ireg - iRegShadowFirst + ib] = true;
+                    }
+                this.anyPending = true;
+                this.flushWritesIfDue();
+                }
+            }
+        }
+
+    private void flushWritesIfDue()
+        {
+        if (this.anyPending && this.readCyclesSinceWrite >= this.readCyclesPerWrite)
+            this.flushWrites();
+        }
+
+    /** Issues all pending writes now, one I2C write per run of contiguous registers */
+    private void flushWrites()
+        {
+        synchronized (this.shadowLock)
+            {
+            if (!this.anyPending)
+                return;
+
+            int ib = 0;
+            while (ib < this.pending.length)
+                {
+                if (!this.pending[ib])
+                    {
+                    ib++;
+                    continue;
+                    }
+                int ibFirst = ib;
+                while (ib < this.pending.length && this.pending[ib])
+                    {
+                    this.pending[ib] = false;
+                    ib++;
+                    }
+                if (this.isArmed())
+                    this.i2cDeviceClient.write(iRegShadowFirst + ibFirst, Arrays.copyOfRange(this.shadow, ibFirst, ib), false);
+                }
+
+            this.anyPending = false;
+            this.readCyclesSinceWrite = 0;
+            }
+        }
+
+    private byte read8(int ireg)
+        {
+        return this.read(ireg, 1)[0];
+        }
+
+    /** Reads from the controller, but sees any writes that are still pending */
+    private byte[] read(int ireg, int creg)
+        {
+        byte[] result = this.i2cDeviceClient.read(ireg, creg);
+        synchronized (this.shadowLock)
+            {
+            if (this.anyPending)
+                {
+                for (int ib = 0; ib < creg; ib++)
+                    {
+                    int ibShadow = ireg - iRegShadowFirst + ib;
+                    if (ibShadow >= 0 && ibShadow < this.shadow.length && this.pending[ibShadow])
+                        result[ib] = this.shadow[ibShadow];
+                    }
+                }
+            }
+        return result;
         }
 
+    //----------------------------------------------------------------------------------------------
+    // DcMotorController utility
+    //----------------------------------------------------------------------------------------------
+
     private void initPID()
         {
         // nothing to do here, it seems
@@ -528,6 +710,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         Log.d(LOGGING_TAG, "floating motors");
         this.setMotorPowerFloat(1);
         this.setMotorPowerFloat(2);
+        this.flushWrites();
         i2cDeviceClient.waitForWriteCompletions();  // paranoia about safety
         }
 
@@ -536,6 +719,7 @@ public final class EasyLegacyMotorController implements DcMotorController, IThun
         Log.d(LOGGING_TAG, "stopping motors");
         this.setMotorPower(1, 0);
         this.setMotorPower(2, 0);
+        this.flushWrites();
         i2cDeviceClient.waitForWriteCompletions();  // paranoia about safety
         }
 
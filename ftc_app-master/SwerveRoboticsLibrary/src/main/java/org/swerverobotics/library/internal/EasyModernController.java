@@ -10,9 +10,13 @@ import com.qualcomm.robotcore.hardware.*;
 import com.qualcomm.robotcore.hardware.usb.RobotUsbDevice;
 import com.qualcomm.robotcore.util.*;
 import org.swerverobotics.library.*;
+import org.swerverobotics.library.BuildConfig;
+import java.util.Arrays;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 
+import static junit.framework.Assert.assertTrue;
+
 /**
  * Base class common to both easy modern servo and motor controllers. Handles glue about
  * talking to a ModernRobotics USB device, notably arming and disarming help.
@@ -36,10 +40,20 @@ public abstract class EasyModernController extends ModernRoboticsUsbDevice imple
 
     protected WRITE_STATUS                  writeStatus;
     protected final AtomicLong              readCompletionCount = new AtomicLong();
+    protected volatile long                 nanoTimeReadComplete;   // when the most recent read cycle completed
     // Locking hierarchy is in the order listed
     protected final Object                  concurrentClientLock = new Object();
     protected final Object                  callbackLock         = new Object();
 
+    /** by default, identical writes are suppressed for at most this long before being resent anyway */
+    public static final int                 msWriteRefreshIntervalDefault = 500;
+
+    // What we last wrote with writeIfChanged(), by address, and when. Guarded by concurrentClientLock.
+    private final byte[][]                  committedWrites      = new byte[256][];
+    private final long[]                    nanoCommittedWrites  = new long[256];
+    private long                            nanoWriteRefreshInterval = msWriteRefreshIntervalDefault * 1000000L;
+    protected final AtomicLong              suppressedWriteCount = new AtomicLong();
+
 
     //----------------------------------------------------------------------------------------------
     // Construction
@@ -120,6 +134,7 @@ public abstract class EasyModernController extends ModernRoboticsUsbDevice imple
             MemberUtil.setReadWriteRunnableModernRoboticsUsbDevice(usbDevice, rwRunnable);
             service.execute(rwRunnable);
             rwRunnable.blockUntilReady();
+            this.forgetCommittedWrites();   // whoever wrote last, it wasn't necessarily us
             rwRunnable.setCallback(usbDevice);
             this.eventLoopManager.registerSyncdDevice(rwRunnable);
             }
@@ -141,6 +156,8 @@ public abstract class EasyModernController extends ModernRoboticsUsbDevice imple
         {
         synchronized (this.concurrentClientLock)
             {
+            this.forgetCommittedWrites(address, data.length);
+
             synchronized (this.callbackLock)
                 {
                 // If there's another write ahead of us, then wait till it
@@ -161,6 +178,102 @@ public abstract class EasyModernController extends ModernRoboticsUsbDevice imple
             }
         }
 
+    //----------------------------------------------------------------------------------------------
+    // Redundant write suppression
+    //
+    // Clients commonly set motor powers and servo positions on every loop cycle whether or not
+    // they've changed. Each such write costs a USB write cycle and holds up reads until it's out,
+    // so for those registers we remember what we last wrote and skip rewriting the same thing.
+    // In case the controller has somehow lost that state, identical data is nonetheless
+    // rewritten once the refresh interval has passed.
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the indicated data unless it is the same as what was last written to that address
+     * with this method within the write refresh interval.
+     */
+    protected void writeIfChanged(int address, byte[] data)
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            if (this.isCommittedWrite(address, data))
+                {
+                this.suppressedWriteCount.incrementAndGet();
+                return;
+                }
+
+            this.write(address, data);
+            this.rememberCommittedWrite(address, data);
+            }
+        }
+
+    /**
+     * Answers whether writing the indicated data with writeIfChanged() would be suppressed.
+     * Callers must hold the concurrent client lock across this and any subsequent write.
+     */
+    protected boolean isCommittedWrite(int address, byte[] data)
+        {
+        assertTrue(!BuildConfig.DEBUG || Thread.holdsLock(this.concurrentClientLock));
+        byte[] committed = this.committedWrites[address];
+        return committed != null && Arrays.equals(committed, data) && System.nanoTime() - this.nanoCommittedWrites[address] < this.nanoWriteRefreshInterval;
+        }
+
+    /**
+     * Records that the indicated data has just been written, by some means other than
+     * writeIfChanged(), so that rewriting it with writeIfChanged() will be suppressed.
+     * Callers must hold the concurrent client lock across the write and this.
+     */
+    protected void rememberCommittedWrite(int address, byte[] data)
+        {
+        assertTrue(!BuildConfig.DEBUG || (Thread.holdsLock(this.concurrentClientLock) && data.length <= cbCommittedWriteMax));
+        this.committedWrites[address]     = data.clone();
+        this.nanoCommittedWrites[address] = System.nanoTime();
+        }
+
+    /**
+     * Sets the longest time for which identical writes are suppressed. Zero disables suppression.
+     * @param ms the write refresh interval, in milliseconds
+     */
+    public void setWriteRefreshInterval(int ms)
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            this.nanoWriteRefreshInterval = ms * 1000000L;
+            }
+        }
+
+    /** Returns the number of writes which have been suppressed as redundant */
+    public long getSuppressedWriteCount()
+        {
+        return this.suppressedWriteCount.get();
+        }
+
+    /** Forgets what we've written, so that the next write of each register goes out regardless */
+    protected void forgetCommittedWrites()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            Arrays.fill(this.committedWrites, null);
+            }
+        }
+
+    private void forgetCommittedWrites(int address, int length)
+        {
+        // Note: we may get here from our superclass constructor, before we're initialized
+        if (this.committedWrites == null)
+            return;
+
+        // Anything overlapping the range is now stale, including multi-byte writes that begin before it
+        for (int a = Math.max(0, address - cbCommittedWriteMax + 1); a < Math.min(this.committedWrites.length, address + length); a++)
+            {
+            byte[] committed = this.committedWrites[a];
+            if (committed != null && a + committed.length > address)
+                this.committedWrites[a] = null;
+            }
+        }
+
+    private static final int cbCommittedWriteMax = 4;
+
     @Override public byte[] read(int address, int size)
         {
         synchronized (this.concurrentClientLock)
@@ -199,9 +312,30 @@ public abstract class EasyModernController extends ModernRoboticsUsbDevice imple
             super.readComplete();
             if (this.writeStatus==WRITE_STATUS.READ)
                 this.writeStatus = WRITE_STATUS.IDLE;
+            this.nanoTimeReadComplete = System.nanoTime();
             readCompletionCount.incrementAndGet();
             this.callbackLock.notifyAll();
             }
+        this.onReadComplete(this.nanoTimeReadComplete);
+        }
+
+    /**
+     * Called on the USB read thread each time a read cycle completes, so that subclasses can
+     * digest freshly read data without issuing reads of their own. Must not block.
+     * @param nanoTime  the time at which the read cycle completed
+     * @see #readWithoutWaiting(int, int)
+     */
+    protected void onReadComplete(long nanoTime)
+        {
+        }
+
+    /**
+     * Reads from the memory map as most recently read from the module, without waiting for
+     * any outstanding writes to complete. For use from {@link #onReadComplete(long)}.
+     */
+    protected byte[] readWithoutWaiting(int address, int size)
+        {
+        return super.read(address, size);
         }
 
     void waitForNextReadComplete()
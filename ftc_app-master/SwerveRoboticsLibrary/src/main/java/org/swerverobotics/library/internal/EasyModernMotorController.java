@@ -9,6 +9,7 @@ import com.qualcomm.robotcore.hardware.usb.*;
 import com.qualcomm.robotcore.util.*;
 
 import org.swerverobotics.library.BuildConfig;
+import org.swerverobotics.library.interfaces.*;
 import java.nio.*;
 import java.util.*;
 
@@ -19,7 +20,7 @@ import static junit.framework.Assert.assertTrue;
  * This implementation doesn't use a blocking ReadWriteRunnable; that greatly simplifies
  * programming.
  */
-public class EasyModernMotorController extends EasyModernController implements DcMotorController, VoltageSensor
+public class EasyModernMotorController extends EasyModernController implements DcMotorController, VoltageSensor, IBulkReadMotorController, IVelocityEstimatingMotorController
     {
     //----------------------------------------------------------------------------------------------
     // State
@@ -28,6 +29,23 @@ public class EasyModernMotorController extends EasyModernController implements D
     private DcMotor                                  motor1;
     private DcMotor                                  motor2;
     private final ModernRoboticsUsbDcMotorController target;
+    private final IEncoderVelocityEstimator[]        velocityEstimators;    // indexed by motor
+    private volatile MonitorImage                    monitorImage;          // as of the most recent read cycle. Set under callbackLock.
+
+    /** The memory map as read in one read cycle, together with when that cycle completed */
+    private static class MonitorImage
+        {
+        final byte[] monitor;
+        final long   nanoTime;
+        final long   readCompletionCount;
+
+        MonitorImage(byte[] monitor, long nanoTime, long readCompletionCount)
+            {
+            this.monitor             = monitor;
+            this.nanoTime            = nanoTime;
+            this.readCompletionCount = readCompletionCount;
+            }
+        }
 
     //----------------------------------------------------------------------------------------------
     // Construction
@@ -38,6 +56,7 @@ public class EasyModernMotorController extends EasyModernController implements D
         super(context, target, newDummyReadWriteRunnable(target.getSerialNumber()));
 
         this.target  = target;
+        this.velocityEstimators = new IEncoderVelocityEstimator[] { null, new EncoderVelocityEstimator(), new EncoderVelocityEstimator() };
         this.findTargetNameAndMapping();
         }
 
@@ -198,20 +217,20 @@ public class EasyModernMotorController extends EasyModernController implements D
         {
         this.validateMotor(motor);
         byte[] bytes = this.read(ADDRESS_MOTOR_CURRENT_ENCODER_VALUE_MAP[motor], 4);
-        return TypeConversion.byteArrayToInt(bytes, ByteOrder.BIG_ENDIAN);
+        return intFromBytes(bytes, 0);
         }
 
     @Override public synchronized int getMotorTargetPosition(int motor)
         {
         this.validateMotor(motor);
         byte[] rgbPosition = this.read(ADDRESS_MOTOR_TARGET_ENCODER_VALUE_MAP[motor], 4);
-        return TypeConversion.byteArrayToInt(rgbPosition, ByteOrder.BIG_ENDIAN);
+        return intFromBytes(rgbPosition, 0);
         }
 
     @Override public synchronized void setMotorTargetPosition(int motor, int position)
         {
         this.validateMotor(motor);
-        this.write(ADDRESS_MOTOR_TARGET_ENCODER_VALUE_MAP[motor], TypeConversion.intToByteArray(position, ByteOrder.BIG_ENDIAN));
+        this.writeIfChanged(ADDRESS_MOTOR_TARGET_ENCODER_VALUE_MAP[motor], TypeConversion.intToByteArray(position, ByteOrder.BIG_ENDIAN));
         }
 
     @Override public synchronized boolean getMotorPowerFloat(int motor)
@@ -224,7 +243,7 @@ public class EasyModernMotorController extends EasyModernController implements D
     @Override public synchronized void setMotorPowerFloat(int motor)
         {
         this.validateMotor(motor);
-        this.write(ADDRESS_MOTOR_POWER_MAP[motor], new byte[]{(byte) bPowerFloat});
+        this.writeIfChanged(ADDRESS_MOTOR_POWER_MAP[motor], new byte[]{(byte) bPowerFloat});
         }
 
     //----------------------------------------------------------------------------------------------
@@ -253,6 +272,11 @@ public class EasyModernMotorController extends EasyModernController implements D
         int cur = getMotorCurrentPosition(motor);
         int tar = getMotorTargetPosition(motor);
 
+        return isBusy(cur, tar);
+        }
+
+    static boolean isBusy(int cur, int tar)
+        {
         return (Math.abs(cur - tar) > busyThreshold);
         }
 
@@ -260,7 +284,11 @@ public class EasyModernMotorController extends EasyModernController implements D
         {
         this.validateMotor(motor);
         byte bPower = this.read(ADDRESS_MOTOR_POWER_MAP[motor]);
+        return powerFromByte(bPower);
+        }
 
+    static double powerFromByte(byte bPower)
+        {
         // Float counts as zero power
         if (bPower == bPowerFloat)
             return 0.0;
@@ -276,7 +304,7 @@ public class EasyModernMotorController extends EasyModernController implements D
         this.validateMotor(motor);
         power = Range.clip(power, powerMin, powerMax);   // NB: robot controller runtime previously threw on invalid range instead of clipping
         power = Range.scale(power, powerMin, powerMax, bPowerMin, bPowerMax);
-        this.write(ADDRESS_MOTOR_POWER_MAP[motor], new byte[]{(byte)((int)(power))});
+        this.writeIfChanged(ADDRESS_MOTOR_POWER_MAP[motor], new byte[]{(byte)((int)(power))});
         }
 
     @Override public synchronized RunMode getMotorChannelMode(int motor)
@@ -292,6 +320,10 @@ public class EasyModernMotorController extends EasyModernController implements D
 
         this.write(ADDRESS_MOTOR_MODE_MAP[motor], bNewMode);
 
+        // A mode change may alter the controller's notion of power or target (a reset
+        // zeroes the target, for example), so we can't vouch for what we last wrote
+        this.forgetCommittedWrites();
+
         // The mode switch doesn't happen instantaneously. Wait for it,
         // so that the programmer's model is that he just needs to set the
         // mode and be done.
@@ -351,18 +383,107 @@ public class EasyModernMotorController extends EasyModernController implements D
     public double getVoltage()
         {
         byte[] bytes = this.read(ADDRESS_BATTERY_VOLTAGE, 2);
+        return voltageFromBytes(bytes, 0);
+        }
 
+    static double voltageFromBytes(byte[] bytes, int ib)
+        {
         // "The high byte is the upper 8 bits of a 10 bit value. It may be used as an 8 bit
         // representation of the battery voltage in units of 80mV. This provides a measurement
         // range of 0 – 20.4 volts. The low byte has the lower 2 bits at bit locations 0 and 1
         // in the byte. This increases the measurement resolution to 20mV."
-        bytes[1]          = (byte)(bytes[1] << 6);
-        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.BIG_ENDIAN);
-        int tenBits       = (buffer.getShort()>>6) & 0x3FF;
+        int tenBits       = ((bytes[ib] & 0xFF) << 2) | (bytes[ib+1] & 0x03);
         double result     = ((double)tenBits) * 0.020;
         return result;
         }
 
+    //----------------------------------------------------------------------------------------------
+    // IBulkReadMotorController
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Reads the state of both motors and the battery from one copy of the controller's memory
+     * map, which the USB module refreshes in its entirety on each read cycle.
+     */
+    @Override public synchronized void readSnapshot(Snapshot snapshot)
+        {
+        // The USB thread refills the read cache *before* it calls readComplete(), so reading the
+        // cache here could give us one cycle's data with the previous cycle's timestamp. Instead,
+        // we use the image captured, with its timestamp, on the USB thread itself; as in read(),
+        // we first wait for outstanding writes, and then for the image of the cycle that followed.
+        MonitorImage image;
+        synchronized (this.concurrentClientLock)
+            {
+            synchronized (this.callbackLock)
+                {
+                for (;;)
+                    {
+                    image = this.monitorImage;
+                    if (this.writeStatus == WRITE_STATUS.IDLE && image != null && image.readCompletionCount >= this.readCompletionCount.get())
+                        break;
+                    wait(this.callbackLock);
+                    }
+                }
+            }
+
+        byte[] monitor = image.monitor;
+        snapshot.nanoTime = image.nanoTime;
+        snapshot.voltage  = voltageFromBytes(monitor, ADDRESS_BATTERY_VOLTAGE - START_ADDRESS);
+        for (int motor = motorFirst; motor <= motorLast; motor++)
+            {
+            int  cur   = intFromBytes(monitor, ADDRESS_MOTOR_CURRENT_ENCODER_VALUE_MAP[motor] - START_ADDRESS);
+            int  tar   = intFromBytes(monitor, ADDRESS_MOTOR_TARGET_ENCODER_VALUE_MAP[motor] - START_ADDRESS);
+            byte bPower = monitor[ADDRESS_MOTOR_POWER_MAP[motor] - START_ADDRESS];
+            snapshot.currentPosition[motor] = cur;
+            snapshot.targetPosition[motor]  = tar;
+            snapshot.busy[motor]            = isBusy(cur, tar);
+            snapshot.mode[motor]            = byteToRunMode(monitor[ADDRESS_MOTOR_MODE_MAP[motor] - START_ADDRESS]);
+            snapshot.power[motor]           = powerFromByte(bPower);
+            snapshot.powerFloat[motor]      = bPower == bPowerFloat;
+            snapshot.velocity[motor]        = this.velocityEstimators[motor].getVelocity();
+            snapshot.acceleration[motor]    = this.velocityEstimators[motor].getAcceleration();
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // IVelocityEstimatingMotorController
+    //----------------------------------------------------------------------------------------------
+
+    @Override public IEncoderVelocityEstimator getVelocityEstimator(int motor)
+        {
+        this.validateMotor(motor);
+        return this.velocityEstimators[motor];
+        }
+
+    /**
+     * Feeds the velocity estimators from each read cycle: the module reads the encoders every
+     * cycle whether or not anyone asks, so this costs no extra traffic on the USB bus.
+     */
+    @Override protected void onReadComplete(long nanoTime)
+        {
+        // Note: we may get here from our superclass constructor, before we're initialized
+        if (this.velocityEstimators == null)
+            return;
+
+        // Nothing refills the read cache while we're here on the USB thread, so the data is
+        // that of the cycle that just completed.
+        byte[] monitor = this.readWithoutWaiting(START_ADDRESS, MONITOR_LENGTH);
+        synchronized (this.callbackLock)
+            {
+            this.monitorImage = new MonitorImage(monitor, nanoTime, this.readCompletionCount.get());
+            this.callbackLock.notifyAll();
+            }
+
+        for (int motor = motorFirst; motor <= motorLast; motor++)
+            {
+            // While resetting, the encoder jumps to zero; that's not motion
+            if (byteToRunMode(monitor[ADDRESS_MOTOR_MODE_MAP[motor] - START_ADDRESS]) == RunMode.RESET_ENCODERS)
+                this.velocityEstimators[motor].reset();
+            else
+                this.velocityEstimators[motor].update(intFromBytes(monitor, ADDRESS_MOTOR_CURRENT_ENCODER_VALUE_MAP[motor] - START_ADDRESS), nanoTime);
+            }
+        }
+
     //----------------------------------------------------------------------------------------------
     // Utility
     //----------------------------------------------------------------------------------------------
@@ -397,6 +518,11 @@ public class EasyModernMotorController extends EasyModernController implements D
             }
         }
 
+    static int intFromBytes(byte[] bytes, int ib)
+        {
+        return ((bytes[ib] & 0xFF) << 24) | ((bytes[ib+1] & 0xFF) << 16) | ((bytes[ib+2] & 0xFF) << 8) | (bytes[ib+3] & 0xFF);
+        }
+
     private void validateMotor(int motor)
         {
         if(motor < motorFirst || motor > motorLast)
@@ -9,6 +9,7 @@ import com.qualcomm.robotcore.hardware.usb.RobotUsbDevice;
 import com.qualcomm.robotcore.util.Range;
 import com.qualcomm.robotcore.util.SerialNumber;
 import org.swerverobotics.library.BuildConfig;
+import org.swerverobotics.library.interfaces.*;
 import java.util.*;
 
 import static junit.framework.Assert.*;
@@ -17,8 +18,13 @@ import static junit.framework.Assert.*;
 /**
  * An alternate implementation of the driver for a Modern Robotics Servo Controller.
  * This implementation doesn't use a blocking ReadWriteRunnable; that simplifies programming.
+ *
+ * <p>The six position registers are contiguous and are immediately followed by the PWM
+ * register, so a group of staged positions is committed as a single write spanning from the
+ * lowest staged channel up to, where possible, the PWM register. Channels within that span
+ * that weren't staged are rewritten with the positions we last gave them.</p>
  */
-public class EasyModernServoController extends EasyModernController implements ServoController
+public class EasyModernServoController extends EasyModernController implements ServoController, IGroupedServoController
     {
     //----------------------------------------------------------------------------------------------
     // State
@@ -41,6 +47,10 @@ public class EasyModernServoController extends EasyModernController implements S
 
     private List<Servo>                              servos;
     private final double[]                           servoPositions;
+    private final byte[]                             regPositions;      // what we last wrote to each position register
+    private final boolean[]                          regPositionKnown;  // ... if indeed we've written it since arming
+    private final double[]                           stagedPositions;
+    private final boolean[]                          staged;
     private final ModernRoboticsUsbServoController   target;
 
     //----------------------------------------------------------------------------------------------
@@ -54,6 +64,10 @@ public class EasyModernServoController extends EasyModernController implements S
         this.target  = target;
         this.servos  = new LinkedList<Servo>();
         this.servoPositions  = new double[ADDRESS_CHANNEL_MAP.length];
+        this.regPositions     = new byte[ADDRESS_CHANNEL_MAP.length];
+        this.regPositionKnown = new boolean[ADDRESS_CHANNEL_MAP.length];
+        this.stagedPositions  = new double[ADDRESS_CHANNEL_MAP.length];
+        this.staged           = new boolean[ADDRESS_CHANNEL_MAP.length];
         this.findTargetNameAndMapping();
         }
 
@@ -154,6 +168,10 @@ public class EasyModernServoController extends EasyModernController implements S
 
             // Turn on our usb stuff
             this.installReadWriteRunnable(this, MONITOR_LENGTH, START_ADDRESS);
+            synchronized (this.concurrentClientLock)
+                {
+                Arrays.fill(this.regPositionKnown, false);
+                }
 
             this.floatHardware();
             Log.d(LOGGING_TAG, String.format("....armed \"%s\"", this.getConnectionInfo()));
@@ -211,7 +229,7 @@ public class EasyModernServoController extends EasyModernController implements S
     @Override
     public void pwmEnable()
         {
-        this.write(ADDRESS_PWM, PWM_ENABLE);
+        this.writeIfChanged(ADDRESS_PWM, new byte[] { PWM_ENABLE });
         }
 
     @Override
@@ -233,12 +251,17 @@ public class EasyModernServoController extends EasyModernController implements S
         {
         validateServo(servo);
         position = Range.clip(position, positionMin, positionMax);  // note: runtime formerly threw on range error
-        double bPosition = Range.scale(position, positionMin, positionMax, regPositionMin, regPositionMax);
-        this.write(ADDRESS_CHANNEL_MAP[servo], bPosition);
-        this.pwmEnable();
-
-        // We remember the servo target positions so that getServoPosition can return something reasonable
-        this.servoPositions[servo] = position;
+        synchronized (this.concurrentClientLock)
+            {
+            byte bPosition = regPositionFromPosition(position);
+            this.writeIfChanged(ADDRESS_CHANNEL_MAP[servo], new byte[] { bPosition });
+            this.pwmEnable();
+
+            // We remember the servo target positions so that getServoPosition can return something reasonable
+            this.servoPositions[servo]   = position;
+            this.regPositions[servo]     = bPosition;
+            this.regPositionKnown[servo] = true;
+            }
         }
 
     @Override
@@ -249,10 +272,124 @@ public class EasyModernServoController extends EasyModernController implements S
         return this.servoPositions[servo];
         }
 
+    //----------------------------------------------------------------------------------------------
+    // IGroupedServoController
+    //----------------------------------------------------------------------------------------------
+
+    @Override public void stageServoPosition(int servo, double position)
+        {
+        validateServo(servo);
+        synchronized (this.concurrentClientLock)
+            {
+            this.stagedPositions[servo] = Range.clip(position, positionMin, positionMax);
+            this.staged[servo]          = true;
+            }
+        }
+
+    @Override public void discardStagedServoPositions()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            Arrays.fill(this.staged, false);
+            }
+        }
+
+    @Override public void commitStagedServoPositions()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            int servoFirst = SERVO_LAST + 1;
+            int servoLast  = SERVO_FIRST - 1;
+            boolean allCommitted = true;
+            for (int servo = SERVO_FIRST; servo <= SERVO_LAST; servo++)
+                {
+                if (this.staged[servo])
+                    {
+                    servoFirst = Math.min(servoFirst, servo);
+                    servoLast  = Math.max(servoLast, servo);
+                    allCommitted = allCommitted && this.isCommittedWrite(ADDRESS_CHANNEL_MAP[servo], new byte[] { regPositionFromPosition(this.stagedPositions[servo]) });
+                    }
+                }
+            if (servoFirst > servoLast)
+                return;
+
+            if (allCommitted && this.isCommittedWrite(ADDRESS_PWM, new byte[] { PWM_ENABLE }))
+                {
+                // The hardware already has all this
+                this.suppressedWriteCount.incrementAndGet();
+                for (int servo = servoFirst; servo <= servoLast; servo++)
+                    {
+                    if (this.staged[servo])
+                        this.servoPositions[servo] = this.stagedPositions[servo];
+                    }
+                }
+            else
+                {
+                // Run on past the last staged servo, and on into the PWM register, if we
+                // know what's in the position registers along the way
+                while (servoLast < SERVO_LAST && this.regPositionKnown[servoLast + 1])
+                    servoLast++;
+
+                boolean pwmWritten = false;
+                int servo = servoFirst;
+                while (servo <= servoLast)
+                    {
+                    // Find the next run of servos whose register contents we can supply.
+                    // If it includes no staged servo there's no need to write it.
+                    int     servoRunFirst = servo;
+                    boolean anyStaged     = false;
+                    while (servo <= servoLast && (this.staged[servo] || this.regPositionKnown[servo]))
+                        {
+                        anyStaged = anyStaged || this.staged[servo];
+                        servo++;
+                        }
+                    int servoRunMax = servo;
+                    servo = Math.max(servo, servoRunFirst + 1);
+                    if (!anyStaged)
+                        continue;
+
+                    boolean includePwm = servoRunMax == SERVO_LAST + 1;
+                    byte[] data = new byte[servoRunMax - servoRunFirst + (includePwm ? 1 : 0)];
+                    for (int s = servoRunFirst; s < servoRunMax; s++)
+                        {
+                        if (this.staged[s])
+                            {
+                            this.servoPositions[s]   = this.stagedPositions[s];
+                            this.regPositions[s]     = regPositionFromPosition(this.stagedPositions[s]);
+                            this.regPositionKnown[s] = true;
+                            }
+                        data[s - servoRunFirst] = this.regPositions[s];
+                        }
+                    if (includePwm)
+                        data[data.length - 1] = PWM_ENABLE;
+
+                    this.write(ADDRESS_CHANNEL_MAP[servoRunFirst], data);
+                    for (int s = servoRunFirst; s < servoRunMax; s++)
+                        this.rememberCommittedWrite(ADDRESS_CHANNEL_MAP[s], new byte[] { data[s - servoRunFirst] });
+                    if (includePwm)
+                        {
+                        this.rememberCommittedWrite(ADDRESS_PWM, new byte[] { PWM_ENABLE });
+                        pwmWritten = true;
+                        }
+                    }
+
+                if (!pwmWritten)
+                    this.pwmEnable();
+                }
+
+            Arrays.fill(this.staged, false);
+            }
+        }
+
     //----------------------------------------------------------------------------------------------
     // Utility
     //----------------------------------------------------------------------------------------------
 
+    static byte regPositionFromPosition(double position)
+        {
+        return (byte)(int)Range.scale(position, positionMin, positionMax, regPositionMin, regPositionMax);
+        }
+
     private void validateServo(int servo)
         {
         if (servo < SERVO_FIRST || servo > SERVO_LAST)
@@ -0,0 +1,269 @@
+package org.swerverobotics.library.internal;
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
+import com.qualcomm.robotcore.hardware.DcMotor;
+
+import org.swerverobotics.library.SynchronousOpMode;
+import org.swerverobotics.library.exceptions.RuntimeInterruptedException;
+import org.swerverobotics.library.interfaces.*;
+
+import static org.swerverobotics.library.internal.Util.*;
+
+/**
+ * EncoderImuOdometer is a dead-reckoning odometer for a robot with a differential (tank style)
+ * drive. Each update, the distance travelled is the mean of the travel of the left and right
+ * drive wheels as reported by their encoders, and that distance is taken to have been travelled
+ * along the mean of the headings at the start and end of the update. Heading comes from the IMU
+ * if there is one, as that is far more trustworthy than the encoders when wheels slip in turns.
+ *
+ * <p>The pose is published as an immutable object through a volatile reference, so readers
+ * never wait. Updates to the pose, by the tracking thread or by setPose(), are serialized
+ * with a lock that readers never touch.</p>
+ */
+public class EncoderImuOdometer implements IOdometer, IOpModeStateTransitionEvents
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    private static final int msStopWait = 100;
+
+    private final OpMode        context;
+    private final DcMotor       motorLeft;
+    private final DcMotor       motorRight;
+    private final IBNO055IMU    imu;                // may be null
+    private final Parameters    parameters;
+    private final IBNO055IMU.Sample sample = new IBNO055IMU.Sample();  // used only on the tracking thread
+    private volatile IBNO055IMU.ANGLEUNIT imuAngleUnit; // the units of the IMU's headings, as of start()
+
+    private final Object        lock = new Object();    // serializes changes to the pose
+    private volatile Pose       pose;               // the published pose
+    private boolean             haveBaseline;       // do we have a previous set of readings to difference against?
+    private int                 encLeftPrev;
+    private int                 encRightPrev;
+    private double              imuHeadingPrev;     // radians, counterclockwise, as last read
+    private double              headingOffset;      // what to add to the IMU's heading to get ours
+    private double              x, y, heading;      // the pose we're accumulating
+
+    private Thread              thread;             // the tracking thread, if any. Guarded by 'this'.
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public EncoderImuOdometer(OpMode context, DcMotor motorLeft, DcMotor motorRight, IBNO055IMU imu, Parameters parameters)
+        {
+        if (motorLeft == null || motorRight == null)
+            throw new IllegalArgumentException("odometry requires both a left and a right drive motor");
+
+        this.context      = context;
+        this.motorLeft    = motorLeft;
+        this.motorRight   = motorRight;
+        this.imu          = imu;
+        this.parameters   = parameters;
+        this.pose         = new Pose();
+        this.haveBaseline = false;
+        this.thread       = null;
+
+        RobotStateTransitionNotifier.register(context, this);
+        }
+
+    @Override public synchronized boolean onUserOpModeStop()
+        {
+        this.stop();
+        return true;
+        }
+
+    @Override public synchronized boolean onRobotShutdown()
+        {
+        this.stop();
+        return true;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // IOdometer
+    //----------------------------------------------------------------------------------------------
+
+    @Override public Pose getPose()
+        {
+        return this.pose;
+        }
+
+    @Override public void setPose(Pose pose)
+        {
+        synchronized (this.lock)
+            {
+            this.x       = pose.x;
+            this.y       = pose.y;
+            this.heading = pose.heading;
+            this.headingOffset = pose.heading - this.imuHeadingPrev;
+            this.pose    = new Pose(pose.x, pose.y, pose.heading, System.nanoTime());
+            }
+        }
+
+    @Override public synchronized void start()
+        {
+        this.stop();
+
+        if (this.imu != null)
+            {
+            // The IMU has no parameters, and so no angle unit, until it's initialized
+            IBNO055IMU.Parameters imuParameters = this.imu.getParameters();
+            if (imuParameters == null)
+                throw new IllegalStateException("odometer started before its IMU was initialized");
+            this.imuAngleUnit = imuParameters.angleunit;
+            }
+
+        IInterruptableRunnable body = new IInterruptableRunnable()
+            {
+            @Override public void run() throws InterruptedException
+                {
+                track();
+                }
+            };
+
+        if (this.context instanceof SynchronousOpMode && SwerveThreadContext.isSynchronousThread())
+            {
+            // So that the motors can be read from the tracking thread
+            this.thread = ((SynchronousOpMode)this.context).createSynchronousWorkerThread(body);
+            }
+        else
+            {
+            this.thread = new Thread(new InterruptableRunnableAdapter(body));
+            this.thread.setDaemon(true);
+            }
+        this.thread.setName("odometer");
+        this.thread.start();
+        }
+
+    @Override public synchronized void stop()
+        {
+        if (this.thread != null)
+            {
+            this.thread.interrupt();
+            try {
+                this.thread.join(msStopWait);
+                }
+            catch (InterruptedException e)
+                {
+                handleCapturedInterrupt(e);
+                }
+            this.thread = null;
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Tracking
+    //----------------------------------------------------------------------------------------------
+
+    private void track() throws InterruptedException
+        {
+        long nanoInterval = this.parameters.msUpdateInterval * 1000000L;
+        long nanoNext     = System.nanoTime();
+        try {
+            while (!Thread.currentThread().isInterrupted())
+                {
+                update();
+
+                // Run at a fixed rate; if we've fallen well behind, don't try to catch up
+                nanoNext += nanoInterval;
+                long nanoNow = System.nanoTime();
+                if (nanoNext - nanoNow < -nanoInterval)
+                    nanoNext = nanoNow;
+                long nanoSleep = nanoNext - nanoNow;
+                if (nanoSleep > 0)
+                    Thread.sleep(nanoSleep / 1000000L, (int)(nanoSleep % 1000000L));
+                }
+            }
+        catch (RuntimeInterruptedException e)
+            {
+            // the hardware read was interrupted: we're being stopped
+            }
+        }
+
+    private void update()
+        {
+        // Do the hardware reads outside of the lock
+        int    encLeft    = this.motorLeft.getCurrentPosition();
+        int    encRight   = this.motorRight.getCurrentPosition();
+        long   nanoTime   = System.nanoTime();
+        double imuHeading = this.imu == null ? 0 : readImuHeading();
+
+        synchronized (this.lock)
+            {
+            if (this.haveBaseline)
+                {
+                double dLeft  = (encLeft  - this.encLeftPrev)  / this.parameters.ticksPerUnit;
+                double dRight = (encRight - this.encRightPrev) / this.parameters.ticksPerUnit;
+                double distance = (dLeft + dRight) / 2;
+
+                double headingDelta = this.imu == null
+                        ? (dRight - dLeft) / this.parameters.trackWidth
+                        : normalizeAngle(imuHeading + this.headingOffset - this.heading);
+
+                double headingMean = this.heading + headingDelta / 2;
+                this.x      += distance * Math.cos(headingMean);
+                this.y      += distance * Math.sin(headingMean);
+                this.heading = normalizeAngle(this.heading + headingDelta);
+                }
+            else
+                {
+                // Whatever the IMU now says is, by definition, the heading we're at
+                this.headingOffset = this.heading - imuHeading;
+                this.haveBaseline  = true;
+                }
+
+            this.encLeftPrev    = encLeft;
+            this.encRightPrev   = encRight;
+            this.imuHeadingPrev = imuHeading;
+            this.pose = new Pose(this.x, this.y, this.heading, nanoTime);
+            }
+        }
+
+    /** Returns the IMU's heading in radians, counterclockwise */
+    private double readImuHeading()
+        {
+        // If the IMU is sampling in the background, and recently so, use that and save a read
+        double heading;
+        long nanoFresh = this.parameters.msUpdateInterval * 1000000L;
+        if (this.imu.getLatestSample(this.sample) && System.nanoTime() - this.sample.nanoTime < nanoFresh)
+            heading = this.sample.heading;
+        else
+            heading = this.imu.getAngularOrientation().heading;
+
+        if (this.imuAngleUnit == IBNO055IMU.ANGLEUNIT.DEGREES)
+            heading = Math.toRadians(heading);
+        return this.parameters.imuHeadingIsClockwise ? -heading : heading;
+        }
+
+    /** Returns the indicated angle, in radians, normalized to the range (-pi, pi] */
+    private static double normalizeAngle(double radians)
+        {
+        radians = radians % (2 * Math.PI);
+        if (radians <= -Math.PI) radians += 2 * Math.PI;
+        else if (radians > Math.PI) radians -= 2 * Math.PI;
+        return radians;
+        }
+
+    /** Runs an IInterruptableRunnable on a plain thread */
+    private static class InterruptableRunnableAdapter implements Runnable
+        {
+        private final IInterruptableRunnable body;
+
+        InterruptableRunnableAdapter(IInterruptableRunnable body)
+            {
+            this.body = body;
+            }
+
+        @Override public void run()
+            {
+            try {
+                this.body.run();
+                }
+            catch (InterruptedException e)
+                {
+                // we're being stopped; just return
+                }
+            }
+        }
+    }
@@ -0,0 +1,160 @@
+package org.swerverobotics.library.internal;
+
+import org.swerverobotics.library.interfaces.*;
+
+/**
+ * EncoderVelocityEstimator is the implementation of IEncoderVelocityEstimator.
+ *
+ * <p>The readings in the window are kept in a ring buffer. Each update fits p = a + b*u + c*u*u
+ * to them by least squares, where u is the time of each reading, in seconds, measured from the
+ * mean time of the window; centering like that keeps the normal equations well conditioned.
+ * The velocity is the slope of that fit at the newest reading and the acceleration is 2c. With
+ * only two readings, or if the readings are too bunched in time to determine a curvature, we
+ * fall back to a straight line fit and report zero acceleration.</p>
+ */
+public class EncoderVelocityEstimator implements IEncoderVelocityEstimator
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    /** the default number of readings over which estimators fit */
+    public static final int windowSizeDefault = 6;
+
+    private final int       windowSize;
+    private final int[]     positions;      // ring buffer of readings. Guarded by 'this'.
+    private final long[]    nanoTimes;
+    private int             iNext;          // where the next reading goes
+    private int             count;          // how many readings are in the ring buffer
+    private volatile Estimate estimate;     // the published estimate
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public EncoderVelocityEstimator()
+        {
+        this(windowSizeDefault);
+        }
+
+    /**
+     * @param windowSize    the number of readings over which to fit. Must be at least two.
+     */
+    public EncoderVelocityEstimator(int windowSize)
+        {
+        if (windowSize < 2)
+            throw new IllegalArgumentException(String.format("invalid window size: %d", windowSize));
+
+        this.windowSize = windowSize;
+        this.positions  = new int[windowSize];
+        this.nanoTimes  = new long[windowSize];
+        this.reset();
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // IEncoderVelocityEstimator
+    //----------------------------------------------------------------------------------------------
+
+    @Override public synchronized void update(int position, long nanoTime)
+        {
+        if (this.count > 0 && nanoTime - this.nanoTimes[this.iNewest()] <= 0)
+            return;
+
+        this.positions[this.iNext] = position;
+        this.nanoTimes[this.iNext] = nanoTime;
+        this.iNext = (this.iNext + 1) % this.windowSize;
+        if (this.count < this.windowSize)
+            this.count++;
+
+        this.estimate = this.fit();
+        }
+
+    @Override public synchronized void reset()
+        {
+        this.iNext    = 0;
+        this.count    = 0;
+        this.estimate = new Estimate();
+        }
+
+    @Override public Estimate getEstimate()
+        {
+        return this.estimate;
+        }
+
+    @Override public double getVelocity()
+        {
+        return this.estimate.velocity;
+        }
+
+    @Override public double getAcceleration()
+        {
+        return this.estimate.acceleration;
+        }
+
+    @Override public int getWindowSize()
+        {
+        return this.windowSize;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Fitting
+    //----------------------------------------------------------------------------------------------
+
+    private int iNewest()
+        {
+        return (this.iNext + this.windowSize - 1) % this.windowSize;
+        }
+
+    private Estimate fit()
+        {
+        int  iNewest        = this.iNewest();
+        int  positionNewest = this.positions[iNewest];
+        long nanoNewest     = this.nanoTimes[iNewest];
+        int  n              = this.count;
+
+        if (n < 2)
+            return new Estimate(positionNewest, 0, 0, nanoNewest, n);
+
+        // Work relative to the newest reading, so that the sums stay small. Times are in seconds.
+        double tMean = 0;
+        for (int i = 0; i < n; i++)
+            tMean += (this.nanoTimes[i] - nanoNewest) * 1e-9;
+        tMean /= n;
+
+        double s2 = 0, s3 = 0, s4 = 0, t0 = 0, t1 = 0, t2 = 0;
+        for (int i = 0; i < n; i++)
+            {
+            double u  = (this.nanoTimes[i] - nanoNewest) * 1e-9 - tMean;
+            double uu = u * u;
+            double p  = this.positions[i] - positionNewest;
+            s2 += uu;
+            s3 += uu * u;
+            s4 += uu * uu;
+            t0 += p;
+            t1 += u * p;
+            t2 += uu * p;
+            }
+
+        // The normal equations are
+        //      | n   0   s2 | |a|   |t0|
+        //      | 0   s2  s3 | |b| = |t1|
+        //      | s2  s3  s4 | |c|   |t2|
+        // the zeros being courtesy of the centering
+        double b, c;
+        double det = n * (s2 * s4 - s3 * s3) - s2 * s2 * s2;
+        if (n >= 3 && Math.abs(det) > 1e-12 * n * s2 * s4)
+            {
+            b = (n * (t1 * s4 - s3 * t2) + s2 * (s3 * t0 - s2 * t1)) / det;
+            c = (n * (s2 * t2 - s3 * t1) - s2 * s2 * t0) / det;
+            }
+        else
+            {
+            b = t1 / s2;
+            c = 0;
+            }
+
+        // The newest reading is at u = -tMean
+        double velocity = b - 2 * c * tMean;
+        return new Estimate(positionNewest, velocity, 2 * c, nanoNewest, n);
+        }
+    }
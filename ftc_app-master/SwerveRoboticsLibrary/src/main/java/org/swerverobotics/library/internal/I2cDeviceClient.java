@@ -11,6 +11,7 @@ import org.swerverobotics.library.interfaces.*;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 import java.util.concurrent.locks.*;
 import static junit.framework.Assert.*;
 import static org.swerverobotics.library.internal.Util.*;
@@ -62,8 +63,17 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
     private volatile int                 cregWrite;
     private volatile int                 msHeartbeatInterval;        // time between heartbeats; zero is 'none necessary'
     private volatile HeartbeatAction     heartbeatAction;            // the action to take when a heartbeat is needed. May be null.
-    private volatile ExecutorService     heartbeatExecutor;          // used to schedule heartbeats when we need to read from the outside
+    private volatile ScheduledExecutorService heartbeatScheduler;    // used to schedule heartbeats when we need to read from the outside. Shared with other clients.
+    private volatile Future<?>           heartbeatTask;              // the outside heartbeat read we currently have outstanding, if any
     private volatile int                 hardwareCycleCount;         // number of callbacks that we've received
+    private volatile ExecutorService     readListenerExecutor;       // the thread on which we notify read listeners. Null when there's nothing to notify.
+    private final CopyOnWriteArrayList<ReadSubscription> readSubscriptions; // those interested in hearing about fresh read data
+    private final Map<Integer,AdaptivePolicy> adaptivePolicies;      // what we've learned about the access patterns of ADAPTIVE windows, keyed by register range
+    private final AdaptiveReadStatistics adaptiveStatistics;         // the decisions we've taken on behalf of ADAPTIVE windows
+    private       I2cStatistics          statistics;                 // bus activity bookkeeping. Guarded by callbackLock.
+    private volatile I2cPortScheduler    portScheduler;              // arbitrates our use of the controller with that of the other ports. May be null.
+    private volatile int                 schedulingWeight;           // our share of the controller relative to other ports
+    private volatile int                 msMinTransactionInterval;   // minimum time between the starts of our transactions; zero if unlimited
 
     /** Keeps track of what we know about about the state of 'readCache' */
     private enum READ_CACHE_STATUS
@@ -73,11 +83,12 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         QUEUED,               // an I2C read has been queued, but we've not yet seen valid data
         QUEUE_COMPLETED,      // a transient state only ever seen within the callback
         VALID_ONLYONCE,       // read cache data has valid data but can only be read once
-        VALID_QUEUED;         // read cache has valid data AND a read has been queued
+        VALID_QUEUED,         // read cache has valid data AND a read has been queued
+        VALID_PENDING;        // read cache has valid data AND a read will be queued once the port scheduler allows
 
         boolean isValid()
             {
-            return this==VALID_QUEUED || this==VALID_ONLYONCE;
+            return this==VALID_QUEUED || this==VALID_ONLYONCE || this==VALID_PENDING;
             }
         boolean isQueued()
             {
@@ -133,7 +144,16 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         this.timeSinceLastHeartbeat.reset();
         this.msHeartbeatInterval    = 0;
         this.heartbeatAction        = null;
-        this.heartbeatExecutor      = null;
+        this.heartbeatScheduler     = null;
+        this.heartbeatTask          = null;
+        this.readListenerExecutor   = null;
+        this.readSubscriptions      = new CopyOnWriteArrayList<ReadSubscription>();
+        this.adaptivePolicies       = new HashMap<Integer,AdaptivePolicy>();
+        this.adaptiveStatistics     = new AdaptiveReadStatistics();
+        this.statistics             = new I2cStatistics();
+        this.portScheduler          = null;
+        this.schedulingWeight       = 1;
+        this.msMinTransactionInterval = 0;
 
         this.readCache      = this.i2cDevice.getI2cReadCache();
         this.readCacheLock  = this.i2cDevice.getI2cReadCacheLock();
@@ -210,7 +230,10 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                 {
                 synchronized (this.callbackLock)
                     {
-                    this.heartbeatExecutor = Executors.newSingleThreadExecutor();
+                    this.heartbeatScheduler = SharedScheduler.getScheduler();
+                    this.portScheduler      = this.i2cDevice.getPortScheduler();
+                    if (!this.readSubscriptions.isEmpty())
+                        this.readListenerExecutor = Executors.newSingleThreadExecutor();
                     this.i2cDevice.registerForI2cPortReadyCallback(this.callback);
                     }
                 this.isArmed = true;
@@ -231,10 +254,21 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                 if (this.isArmed)
                     {
                     // We can't hold the concurrent client lock while we drain the heartbeat
-                    // as that might be doing an external top-level read. But the semantic of
-                    // Executors guarantees us this call returns any actions we've scheduled
-                    // have in fact been completed.
-                    Util.shutdownAndAwaitTermination(this.heartbeatExecutor);
+                    // as that might be doing an external top-level read. The scheduler is shared
+                    // with other clients, so we can't shut it down: instead, we stop issuing new
+                    // heartbeats, then cancel or wait for the one (if any) that's outstanding.
+                    Future<?> heartbeat;
+                    synchronized (this.callbackLock)
+                        {
+                        this.heartbeatScheduler = null;
+                        heartbeat = this.heartbeatTask;
+                        this.heartbeatTask = null;
+                        }
+                    SharedScheduler.cancelAndAwait(heartbeat);
+
+                    ExecutorService listenerExecutor = this.readListenerExecutor;
+                    if (listenerExecutor != null)
+                        Util.shutdownAndAwaitTermination(listenerExecutor);
 
                     // Prevent any new read or write from starting
                     this.disarming = true;
@@ -250,8 +284,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                             waitForWriteCompletionInternal();
 
                             // Now we know that the callback isn't executing, we can pull the
-                            // rug out from under his use of the heartbeater
-                            this.heartbeatExecutor = null;
+                            // rug out from under his use of the listener dispatcher
+                            this.readListenerExecutor = null;
 
                             // Finally, disconnect us from our I2cDevice
                             this.i2cDevice.deregisterForPortReadyCallback();
@@ -333,6 +367,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                     {
                     // Remember the new window, but get a fresh copy so we can implement the read mode policy
                     this.readWindow = newWindow.freshCopy();
+                    if (this.readWindow.getReadMode() == READ_MODE.ADAPTIVE)
+                        this.readWindow.setAdaptiveSwitchToReadMode(adaptivePolicyFor(this.readWindow).switchToReadMode);
                     assertTrue(!BuildConfig.DEBUG || (this.readWindow.isOkToRead() && this.readWindow.maySwitchToReadMode()));
 
                     // Let others know of the update
@@ -394,6 +430,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
      */
     @Override public TimestampedData readTimeStamped(int ireg, int creg)
         {
+        long nanoStart = System.nanoTime();
         try
             {
             synchronized (this.concurrentClientLock)
@@ -411,15 +448,20 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                         this.callbackLock.wait();
                         }
 
+                    noteAdaptiveAccess(false);
+
                     // Is what's in the read cache right now or shortly will be have what we want?
                     if (readCacheValidityCurrentOrImminent() && readWindowActuallyRead != null && readWindowActuallyRead.contains(ireg, creg))
                         {
                         // Ok, we don't have to issue a read, but we may have to wait for validity,
                         // which we we do in a moment down below
                         // log(Log.VERBOSE, String.format("read from cache: (0x%02x,%d)", ireg, creg));
+                        this.statistics.readsServedFromCache++;
                         }
                     else
                         {
+                        this.statistics.readsIssued++;
+
                         // We have to issue a new read. We do so by setting the read window to something
                         // that is readable; this is noticed by the callback which then services the read.
 
@@ -474,6 +516,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                         // readCacheStatus or writeCacheStatus
                         if (this.readCacheStatus==READ_CACHE_STATUS.VALID_ONLYONCE)
                             this.readCacheStatus=READ_CACHE_STATUS.IDLE;
+
+                        this.statistics.readerWait.record(System.nanoTime() - nanoStart);
                         }
                     }
                 }
@@ -507,6 +551,170 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         return this.readCacheStatus.isValid() && !this.readWindowChanged;
         }
 
+    //----------------------------------------------------------------------------------------------
+    // Adaptive read mode
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * AdaptivePolicy learns, for one set of registers read with an ADAPTIVE window, how likely
+     * it is that a write is followed by a read rather than by another write. If that's likely,
+     * then it's worth paying to switch back to read mode right after writing, as the read will
+     * then likely be serviced from the cache; if it isn't, the switch is likely wasted effort.
+     */
+    private static class AdaptivePolicy
+        {
+        // How quickly we forget the past, and the hysteresis with which we change our minds
+        static final double weightNew          = 0.25;
+        static final double likelihoodEager    = 0.65;
+        static final double likelihoodLazy     = 0.35;
+
+        double  readAfterWriteLikelihood = 0.5;
+        boolean switchToReadMode         = true;    // as all windows do before they are first read
+        boolean lastAccessWasWrite       = false;
+
+        /** Returns whether this access changed our mind */
+        boolean noteAccess(boolean isWrite)
+            {
+            if (this.lastAccessWasWrite)
+                {
+                double observed = isWrite ? 0.0 : 1.0;
+                this.readAfterWriteLikelihood += weightNew * (observed - this.readAfterWriteLikelihood);
+                }
+            this.lastAccessWasWrite = isWrite;
+
+            boolean prev = this.switchToReadMode;
+            if (this.readAfterWriteLikelihood >= likelihoodEager)
+                this.switchToReadMode = true;
+            else if (this.readAfterWriteLikelihood <= likelihoodLazy)
+                this.switchToReadMode = false;
+            return prev != this.switchToReadMode;
+            }
+        }
+
+    /** Returns the policy for the registers covered by the indicated window. Call with the callbackLock held. */
+    private AdaptivePolicy adaptivePolicyFor(ReadWindow window)
+        {
+        Integer key = (window.getIregFirst() << 8) | window.getCreg();
+        AdaptivePolicy result = this.adaptivePolicies.get(key);
+        if (result == null)
+            {
+            result = new AdaptivePolicy();
+            this.adaptivePolicies.put(key, result);
+            }
+        return result;
+        }
+
+    /** Update what we know about access patterns. Call with the callbackLock held. */
+    private void noteAdaptiveAccess(boolean isWrite)
+        {
+        ReadWindow window = this.readWindow;
+        if (window != null && window.getReadMode() == READ_MODE.ADAPTIVE)
+            {
+            AdaptivePolicy policy = adaptivePolicyFor(window);
+            if (policy.noteAccess(isWrite))
+                {
+                this.adaptiveStatistics.policyChanges++;
+                if (this.loggingEnabled)
+                    log(Log.DEBUG, "adaptive(0x%02x,%d): switchToRead=%s p=%.2f", window.getIregFirst(), window.getCreg(), policy.switchToReadMode, policy.readAfterWriteLikelihood);
+                }
+            window.setAdaptiveSwitchToReadMode(policy.switchToReadMode);
+            }
+        }
+
+    @Override public AdaptiveReadStatistics getAdaptiveReadStatistics()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            synchronized (this.callbackLock)
+                {
+                AdaptiveReadStatistics result = new AdaptiveReadStatistics();
+                result.writesFollowedBySwitchToRead    = this.adaptiveStatistics.writesFollowedBySwitchToRead;
+                result.writesFollowedByStayInWriteMode = this.adaptiveStatistics.writesFollowedByStayInWriteMode;
+                result.policyChanges                   = this.adaptiveStatistics.policyChanges;
+                if (this.readWindow != null && this.readWindow.getReadMode() == READ_MODE.ADAPTIVE)
+                    {
+                    AdaptivePolicy policy = adaptivePolicyFor(this.readWindow);
+                    result.readAfterWriteLikelihood = policy.readAfterWriteLikelihood;
+                    result.switchToReadAfterWrite   = policy.switchToReadMode;
+                    }
+                return result;
+                }
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Read subscriptions
+    //----------------------------------------------------------------------------------------------
+
+    @Override public void registerReadListener(ReadWindow window, IReadListener listener)
+        {
+        if (window == null || listener == null)
+            throw new IllegalArgumentException("read listener registration requires both a window and a listener");
+
+        synchronized (this.armingLock)
+            {
+            synchronized (this.callbackLock)
+                {
+                this.readSubscriptions.add(new ReadSubscription(window, listener));
+
+                // Start up the dispatch thread now rather than on the callback thread
+                if (this.isArmed && this.readListenerExecutor == null)
+                    this.readListenerExecutor = Executors.newSingleThreadExecutor();
+                }
+            }
+        }
+
+    @Override public void unregisterReadListener(IReadListener listener)
+        {
+        // CopyOnWriteArrayList iterators don't support remove(), so find then remove
+        List<ReadSubscription> toRemove = new LinkedList<ReadSubscription>();
+        for (ReadSubscription subscription : this.readSubscriptions)
+            {
+            if (subscription.listener == listener)
+                toRemove.add(subscription);
+            }
+        this.readSubscriptions.removeAll(toRemove);
+        }
+
+    /**
+     * A ReadSubscription remembers one registration of an IReadListener. At most one notification
+     * per subscription is ever queued to the dispatch thread; if fresh data arrives before that
+     * notification has run, the pending data is simply replaced with the newer data.
+     */
+    private class ReadSubscription implements Runnable
+        {
+        final ReadWindow    window;
+        final IReadListener listener;
+        final AtomicReference<TimestampedData> pending = new AtomicReference<TimestampedData>(null);
+
+        ReadSubscription(ReadWindow window, IReadListener listener)
+            {
+            this.window   = window;
+            this.listener = listener;
+            }
+
+        /** Called on the callback thread with fresh data. Returns whether the dispatcher must be poked */
+        boolean offer(TimestampedData data)
+            {
+            return this.pending.getAndSet(data) == null;
+            }
+
+        @Override public void run()
+            {
+            TimestampedData data = this.pending.getAndSet(null);
+            if (data != null)
+                {
+                try {
+                    this.listener.onDataRead(this.window, data);
+                    }
+                catch (Exception e) // paranoia: a misbehaving listener mustn't kill the dispatcher
+                    {
+                    log(Log.ERROR, "exception thrown in read listener: %s", Util.getStackTrace(e));
+                    }
+                }
+            }
+        }
+
     /**
      * Write a byte to the indicated register
      */
@@ -532,6 +740,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         }
     @Override public void write(int ireg, byte[] data, boolean waitForCompletion)
         {
+        long nanoStart = System.nanoTime();
         try
             {
             synchronized (this.concurrentClientLock)
@@ -544,6 +753,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
 
                 synchronized (this.callbackLock)
                     {
+                    noteAdaptiveAccess(true);
+
                     // If there's already a pending write, can we coalesce?
                     boolean doCoalesce = false;
                     if (this.writeCacheStatus == WRITE_CACHE_STATUS.DIRTY && this.cregWrite + data.length <= ReadWindow.cregWriteMax)
@@ -601,6 +812,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                         // relative to the actual I2C device write.
                         waitForWriteCompletionInternal();
                         }
+
+                    this.statistics.writerWait.record(System.nanoTime() - nanoStart);
                     }
                 }
             }
@@ -670,6 +883,30 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
             }
         }
     
+    @Override public I2cStatistics getI2cStatistics()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            synchronized (this.callbackLock)
+                {
+                I2cStatistics result = this.statistics.copy();
+                result.hardwareCycles = this.hardwareCycleCount;
+                return result;
+                }
+            }
+        }
+
+    @Override public void resetI2cStatistics()
+        {
+        synchronized (this.concurrentClientLock)
+            {
+            synchronized (this.callbackLock)
+                {
+                this.statistics = new I2cStatistics();
+                }
+            }
+        }
+
     @Override public void setLogging(boolean enabled)
         {
         synchronized (this.concurrentClientLock)
@@ -736,6 +973,28 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
             }
         }
 
+    @Override public void setSchedulingWeight(int weight)
+        {
+        if (weight <= 0)
+            throw new IllegalArgumentException(String.format("scheduling weight must be positive: %d", weight));
+        this.schedulingWeight = weight;
+        }
+
+    @Override public int getSchedulingWeight()
+        {
+        return this.schedulingWeight;
+        }
+
+    @Override public void setMinimumTransactionInterval(int ms)
+        {
+        this.msMinTransactionInterval = Math.max(0, ms);
+        }
+
+    @Override public int getMinimumTransactionInterval()
+        {
+        return this.msMinTransactionInterval;
+        }
+
     @Override public void setThreadPriorityBoost(int priorityBoost)
         {
         synchronized (this.concurrentClientLock)
@@ -796,6 +1055,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         boolean heartbeatRequired = false;
         boolean enabledReadMode   = false;
         boolean enabledWriteMode  = false;
+        boolean scheduleAsked     = false;
+        boolean scheduleGranted   = false;
 
         READ_CACHE_STATUS  prevReadCacheStatus  = READ_CACHE_STATUS.IDLE;
         WRITE_CACHE_STATUS prevWriteCacheStatus = WRITE_CACHE_STATUS.IDLE;
@@ -833,6 +1094,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
             readCacheStatus = READ_CACHE_STATUS.SWITCHINGTOREADMODE;
             i2cDevice.enableI2cReadMode(window.getIregFirst(), window.getCreg());
             enabledReadMode = true;
+            statistics.readModeSwitches++;
 
             // Remember what we actually told the controller
             readWindowSentToController = window;
@@ -847,9 +1109,21 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
 
         void issueWrite()
             {
+            // Record the decision that the adaptive policy, if any, is about to take for us
+            if (readWindow != null && readWindow.getReadMode() == READ_MODE.ADAPTIVE)
+                {
+                if (readWindow.getAdaptiveSwitchToReadMode())
+                    adaptiveStatistics.writesFollowedBySwitchToRead++;
+                else
+                    adaptiveStatistics.writesFollowedByStayInWriteMode++;
+                }
+
             writeCacheStatus = WRITE_CACHE_STATUS.QUEUED;
             i2cDevice.enableI2cWriteMode(iregWriteFirst, cregWrite);
             enabledWriteMode = true;
+            statistics.writeModeSwitches++;
+            statistics.i2cWrites++;
+            statistics.bytesWritten += cregWrite;
 
             // This might be only paranoia, but we're not certain. In any case, it's safe.
             readWindowSentToController = null;
@@ -862,12 +1136,64 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
             dirtyModeCacheStatus();
             }
 
+        /** Returns whether the port scheduler lets us start a new transaction in this callback.
+         * We ask at most once per callback, and only when we actually have work to start. */
+        boolean mayStartTransaction()
+            {
+            if (!scheduleAsked)
+                {
+                scheduleAsked = true;
+                I2cPortScheduler scheduler = portScheduler;
+                scheduleGranted = scheduler == null || scheduler.mayStartTransaction(i2cDevice.getPort(), schedulingWeight, msMinTransactionInterval * 1000000L);
+                if (!scheduleGranted)
+                    statistics.scheduleDeferrals++;
+                }
+            return scheduleGranted;
+            }
+
         void dirtyModeCacheStatus()
             {
             assertTrue(!BuildConfig.DEBUG || modeCacheStatus == MODE_CACHE_STATUS.IDLE);
             modeCacheStatus = MODE_CACHE_STATUS.DIRTY;
             }
 
+        void notifyReadListeners()
+            {
+            ExecutorService executor = readListenerExecutor;
+            if (executor == null || readWindowActuallyRead == null || readSubscriptions.isEmpty())
+                return;
+
+            for (ReadSubscription subscription : readSubscriptions)
+                {
+                if (!readWindowActuallyRead.contains(subscription.window))
+                    continue;
+
+                TimestampedData data = new TimestampedData();
+                data.nanoTime = nanoTimeReadCacheValid;
+                int ibFirst = subscription.window.getIregFirst() - readWindowActuallyRead.getIregFirst() + dibCacheOverhead;
+                try {
+                    readCacheLock.lock();
+                    data.data = Arrays.copyOfRange(readCache, ibFirst, ibFirst + subscription.window.getCreg());
+                    }
+                finally
+                    {
+                    readCacheLock.unlock();
+                    }
+
+                if (subscription.offer(data))
+                    {
+                    try {
+                        executor.submit(subscription);
+                        }
+                    catch (RejectedExecutionException e)
+                        {
+                        // We're racing with disarm. Drop the data so we'll re-submit once re-armed.
+                        subscription.pending.set(null);
+                        }
+                    }
+                }
+            }
+
         private void clearActionFlag()
             {
             try {
@@ -883,6 +1209,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
         void updateStateMachines(UPDATE_STATE_MACHINE caller)
         // We've got quite the little state machine here!
             {
+            long nanoStart = System.nanoTime();
             synchronized (callbackLock)
                 {
                 //----------------------------------------------------------------------------------
@@ -942,6 +1269,8 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                 heartbeatRequired = (msHeartbeatInterval > 0 && milliseconds(timeSinceLastHeartbeat) >= msHeartbeatInterval);
                 enabledReadMode   = false;
                 enabledWriteMode  = false;
+                scheduleAsked     = false;
+                scheduleGranted   = false;
                 
                 prevReadCacheStatus  = readCacheStatus;
                 prevWriteCacheStatus = writeCacheStatus;
@@ -962,6 +1291,12 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                         {
                         readCacheStatus = READ_CACHE_STATUS.QUEUE_COMPLETED;
                         nanoTimeReadCacheValid = System.nanoTime();
+                        statistics.i2cReads++;
+                        if (readWindowActuallyRead != null)
+                            statistics.bytesRead += readWindowActuallyRead.getCreg();
+
+                        // Let any subscribers know that there's fresh data
+                        notifyReadListeners();
                         }
 
                     if (writeCacheStatus == WRITE_CACHE_STATUS.QUEUED)
@@ -978,6 +1313,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                                      (readCacheStatus==READ_CACHE_STATUS.IDLE
                                     ||readCacheStatus==READ_CACHE_STATUS.SWITCHINGTOREADMODE
                                     ||readCacheStatus==READ_CACHE_STATUS.VALID_ONLYONCE
+                                    ||readCacheStatus==READ_CACHE_STATUS.VALID_PENDING
                                     ||readCacheStatus==READ_CACHE_STATUS.QUEUE_COMPLETED));
                     assertTrue(!BuildConfig.DEBUG || (writeCacheStatus == WRITE_CACHE_STATUS.IDLE || writeCacheStatus == WRITE_CACHE_STATUS.DIRTY));
 
@@ -989,10 +1325,14 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                         // We're trying to switch into read mode. Are we there yet?
                         if (i2cDevice.isI2cPortInReadMode())
                             {
-                            // See also below XYZZY
-                            readCacheStatus = READ_CACHE_STATUS.QUEUED;
-                            setActionFlag   = true;     // actually do an I2C read
-                            queueRead       = true;     // read the I2C read results
+                            // See also below XYZZY. If the scheduler won't let us read
+                            // just now, we'll find ourselves back here next time.
+                            if (mayStartTransaction())
+                                {
+                                readCacheStatus = READ_CACHE_STATUS.QUEUED;
+                                setActionFlag   = true;     // actually do an I2C read
+                                queueRead       = true;     // read the I2C read results
+                                }
                             }
                         else
                             {
@@ -1005,12 +1345,15 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
 
                     else if (writeCacheStatus == WRITE_CACHE_STATUS.DIRTY)
                         {
-                        issueWrite();
+                        if (mayStartTransaction())
+                            {
+                            issueWrite();
 
-                        // Our ordering rules are that any reads after a write have to wait until
-                        // the write is actually sent to the hardware, so anything we've read before is junk.
-                        // Note that there's an analogous check in read().
-                        readCacheStatus = READ_CACHE_STATUS.IDLE;
+                            // Our ordering rules are that any reads after a write have to wait until
+                            // the write is actually sent to the hardware, so anything we've read before is junk.
+                            // Note that there's an analogous check in read().
+                            readCacheStatus = READ_CACHE_STATUS.IDLE;
+                            }
                         }
 
                     //--------------------------------------------------------------------------
@@ -1028,7 +1371,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                                     && readWindowSentToController.contains(readWindow)
                                     && i2cDevice.isI2cPortInReadMode());
 
-                            if (readWindow.isOkToRead() && (readSwitchUnnecessary || readWindow.maySwitchToReadMode()))
+                            if (readWindow.isOkToRead() && (readSwitchUnnecessary || readWindow.maySwitchToReadMode()) && mayStartTransaction())
                                 {
                                 if (readSwitchUnnecessary)
                                     {
@@ -1070,13 +1413,21 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                     // see READ_CACHE_STATUS.QUEUE_COMPLETED is if we completed a queuing operation
                     // above.
 
-                    else if (readCacheStatus == READ_CACHE_STATUS.QUEUE_COMPLETED)
+                    else if (readCacheStatus == READ_CACHE_STATUS.QUEUE_COMPLETED || readCacheStatus == READ_CACHE_STATUS.VALID_PENDING)
                         {
                         if (readWindow != null && readWindow.isOkToRead())
                             {
-                            readCacheStatus = READ_CACHE_STATUS.VALID_QUEUED;
-                            setActionFlag = true;           // actually do an I2C read
-                            queueRead     = true;           // read the results of the read
+                            if (mayStartTransaction())
+                                {
+                                readCacheStatus = READ_CACHE_STATUS.VALID_QUEUED;
+                                setActionFlag = true;       // actually do an I2C read
+                                queueRead     = true;       // read the results of the read
+                                }
+                            else
+                                {
+                                // Keep the data we have, and try again next time
+                                readCacheStatus = READ_CACHE_STATUS.VALID_PENDING;
+                                }
                             }
                         else
                             {
@@ -1107,7 +1458,11 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                                 // yet, then issue an I2C read; if he's not, then he soon will be.
                                 if (i2cDevice.isI2cPortInReadMode())
                                     {
-                                    setActionFlag = true;       // issue an I2C read
+                                    if (mayStartTransaction())
+                                        {
+                                        setActionFlag = true;   // issue an I2C read
+                                        statistics.heartbeats++;
+                                        }
                                     }
                                 else
                                     {
@@ -1118,8 +1473,12 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                             else if (readWindowSentToControllerInitialized && readWindowSentToController == null && heartbeatAction.rewriteLastWritten)
                                 {
                                 // Controller is in write mode, and the write cache has what we last wrote
-                                queueFullWrite = true;
-                                setActionFlag = true;           // issue an I2C write
+                                if (mayStartTransaction())
+                                    {
+                                    queueFullWrite = true;
+                                    setActionFlag = true;       // issue an I2C write
+                                    statistics.heartbeats++;
+                                    }
                                 }
 
                             else if (heartbeatAction.heartbeatReadWindow != null)
@@ -1130,9 +1489,10 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                                 // choose this flavor of heartbeat, so that's a reasonable tradeoff.
                                 final ReadWindow window = heartbeatAction.heartbeatReadWindow;   // capture here while we still have the lock
                                 try {
-                                    if (heartbeatExecutor != null)
+                                    // There's no point piling up heartbeats if the last one hasn't yet run
+                                    if (heartbeatScheduler != null && (heartbeatTask == null || heartbeatTask.isDone()))
                                         {
-                                        heartbeatExecutor.submit(new java.lang.Runnable()
+                                        heartbeatTask = heartbeatScheduler.submit(new java.lang.Runnable()
                                             {
                                             @Override public void run()
                                                 {
@@ -1145,6 +1505,7 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                                                     }
                                                 }
                                             });
+                                        statistics.heartbeats++;
                                         }
                                     }
                                 catch (RejectedExecutionException e)
@@ -1224,6 +1585,9 @@ public final class I2cDeviceClient implements II2cDeviceClient, IOpModeStateTran
                     log(Log.DEBUG, message.toString());
                     }
 
+                if (caller == UPDATE_STATE_MACHINE.FROM_CALLBACK)
+                    statistics.callbackDuration.record(System.nanoTime() - nanoStart);
+
                 //----------------------------------------------------------------------------------
                 // Notify anyone blocked in read() or write()
                 callbackLock.notifyAll();
@@ -156,6 +156,16 @@ public final class I2cDeviceOnI2cDeviceController implements II2cDevice
         this.controller.writeI2cPortFlagOnlyToController(port);
         }
 
+    @Override public int getPort()
+        {
+        return this.port;
+        }
+
+    @Override public I2cPortScheduler getPortScheduler()
+        {
+        return I2cPortScheduler.forController(this.controller);
+        }
+
     @Override public void deregisterForPortReadyCallback()
         {
         this.controller.deregisterForPortReadyCallback(port);
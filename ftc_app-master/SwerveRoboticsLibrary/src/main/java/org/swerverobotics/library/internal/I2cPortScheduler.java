@@ -0,0 +1,221 @@
+package org.swerverobotics.library.internal;
+
+import com.qualcomm.robotcore.hardware.*;
+import java.util.*;
+
+/**
+ * I2cPortScheduler arbitrates the I2C transactions that are started on the several ports of
+ * one I2C controller (such as a Core Device Interface Module), so that a chatty device on
+ * one port can't starve the devices on the others of the module's limited bandwidth.
+ *
+ * <p>The clients on each port ask permission before starting each new transaction; if it is
+ * refused, they defer the work to their next callback. Each module cycle (a cycle is deemed to
+ * have begun when a port which has already asked in the current cycle asks again) at most
+ * {@link #getTransactionsPerCycle()} transactions are permitted. When more ports want to
+ * communicate than that, the slots are awarded by stride scheduling: each port accumulates
+ * 'pass' in inverse proportion to its weight each time it is granted a transaction, and the
+ * slots of a cycle go to those who wanted to communicate in the previous cycle and have the
+ * least pass. Slots not claimed by those winners go to whoever asks first. Independently of
+ * all that, a port may also be limited to a minimum interval between its transactions.</p>
+ *
+ * <p>By default, the per-cycle budget is as large as the number of ports on a Core Device
+ * Interface Module, so that only per-port rate limits have any effect.</p>
+ */
+public final class I2cPortScheduler
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final int     transactionsPerCycleDefault = 6;
+    private static final long   strideBase                  = 1L << 20;
+
+    private static final Map<I2cController,I2cPortScheduler> schedulers = new WeakHashMap<I2cController,I2cPortScheduler>();
+
+    private int                         transactionsPerCycle;
+    private final Map<Integer,PortState> ports           = new HashMap<Integer,PortState>();
+    private final Set<Integer>          askedThisCycle  = new HashSet<Integer>();
+    private final Set<Integer>          wantedLastCycle = new HashSet<Integer>();
+    private final Set<Integer>          winners         = new HashSet<Integer>();   // ports to whom this cycle's slots are reserved
+    private int                         grantedThisCycle;
+    private int                         winnersServed;
+    private long                        cycleCount;
+
+    private static class PortState
+        {
+        long    pass            = 0;    // virtual time consumed by this port
+        long    nanoLastGrant   = 0;    // when we last let this port start a transaction
+        long    grantCount      = 0;
+        long    deferralCount   = 0;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Instantiates a scheduler that isn't associated with any controller. Normally,
+     * {@link #forController(I2cController)} is used instead.
+     */
+    public I2cPortScheduler()
+        {
+        this.transactionsPerCycle = transactionsPerCycleDefault;
+        }
+
+    /**
+     * Returns the scheduler for the indicated controller, creating it if necessary.
+     * @param controller    the controller whose ports are to be scheduled
+     * @return              the scheduler for that controller
+     */
+    public static I2cPortScheduler forController(I2cController controller)
+        {
+        synchronized (schedulers)
+            {
+            I2cPortScheduler result = schedulers.get(controller);
+            if (result == null)
+                {
+                result = new I2cPortScheduler();
+                schedulers.put(controller, result);
+                }
+            return result;
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Configuration and monitoring
+    //----------------------------------------------------------------------------------------------
+
+    /** Returns the maximum number of transactions that may be started in any one module cycle */
+    public synchronized int getTransactionsPerCycle()
+        {
+        return this.transactionsPerCycle;
+        }
+
+    /** Sets the maximum number of transactions that may be started in any one module cycle */
+    public synchronized void setTransactionsPerCycle(int transactionsPerCycle)
+        {
+        this.transactionsPerCycle = Math.max(1, transactionsPerCycle);
+        }
+
+    /** Returns the number of module cycles that we have observed */
+    public synchronized long getCycleCount()
+        {
+        return this.cycleCount;
+        }
+
+    /** Returns the number of transactions we've permitted on the indicated port */
+    public synchronized long getGrantCount(int port)
+        {
+        return portState(port).grantCount;
+        }
+
+    /** Returns the number of times we've asked the indicated port to defer its work */
+    public synchronized long getDeferralCount(int port)
+        {
+        return portState(port).deferralCount;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Scheduling
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Asks permission to start a new I2C transaction on the indicated port. Called from
+     * the port ready callback, and only when there is actually work to do.
+     *
+     * @param port              the port on which the transaction is to happen
+     * @param weight            the relative share of the module that this port should receive
+     * @param nanoMinInterval   the minimum time between transactions on this port; zero if none
+     * @return                  whether the transaction may proceed now
+     */
+    public synchronized boolean mayStartTransaction(int port, int weight, long nanoMinInterval)
+        {
+        long nanoNow    = System.nanoTime();
+        PortState state = portState(port);
+
+        // Honor the rate limit before all else. Being rate limited isn't demand on the module.
+        if (nanoMinInterval > 0 && state.nanoLastGrant != 0 && nanoNow - state.nanoLastGrant < nanoMinInterval)
+            {
+            state.deferralCount++;
+            return false;
+            }
+
+        if (this.askedThisCycle.contains(port))
+            startNewCycle();
+        this.askedThisCycle.add(port);
+
+        // Is there a slot for this port?
+        boolean isWinner  = this.winners.contains(port);
+        int slotsReserved = this.winners.size() - this.winnersServed;
+        boolean grant     = isWinner
+                ? this.grantedThisCycle < this.transactionsPerCycle
+                : this.grantedThisCycle + slotsReserved < this.transactionsPerCycle;
+
+        if (grant)
+            {
+            this.grantedThisCycle++;
+            if (isWinner) this.winnersServed++;
+            state.pass         += strideBase / Math.max(1, weight);
+            state.nanoLastGrant = nanoNow;
+            state.grantCount++;
+            }
+        else
+            state.deferralCount++;
+
+        return grant;
+        }
+
+    private void startNewCycle()
+        {
+        this.cycleCount++;
+
+        // Those who asked this past cycle compete for the slots of the next. Newcomers join
+        // at the minimum pass of those already competing so that they don't get credit for
+        // having been idle.
+        long passMin = Long.MAX_VALUE;
+        for (int port : this.askedThisCycle)
+            {
+            if (this.wantedLastCycle.contains(port))
+                passMin = Math.min(passMin, portState(port).pass);
+            }
+        for (int port : this.askedThisCycle)
+            {
+            PortState state = portState(port);
+            if (!this.wantedLastCycle.contains(port) && passMin != Long.MAX_VALUE && state.pass < passMin)
+                state.pass = passMin;
+            }
+
+        this.wantedLastCycle.clear();
+        this.wantedLastCycle.addAll(this.askedThisCycle);
+
+        List<Integer> contenders = new ArrayList<Integer>(this.wantedLastCycle);
+        Collections.sort(contenders, new Comparator<Integer>()
+            {
+            @Override public int compare(Integer lhs, Integer rhs)
+                {
+                long lhsPass = portState(lhs).pass;
+                long rhsPass = portState(rhs).pass;
+                return lhsPass < rhsPass ? -1 : (lhsPass == rhsPass ? lhs.compareTo(rhs) : 1);
+                }
+            });
+
+        this.winners.clear();
+        for (int i = 0; i < contenders.size() && i < this.transactionsPerCycle; i++)
+            this.winners.add(contenders.get(i));
+
+        this.askedThisCycle.clear();
+        this.grantedThisCycle = 0;
+        this.winnersServed    = 0;
+        }
+
+    private PortState portState(int port)
+        {
+        PortState result = this.ports.get(port);
+        if (result == null)
+            {
+            result = new PortState();
+            this.ports.put(port, result);
+            }
+        return result;
+        }
+    }
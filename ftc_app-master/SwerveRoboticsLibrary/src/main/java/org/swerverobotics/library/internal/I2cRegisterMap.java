@@ -0,0 +1,220 @@
+package org.swerverobotics.library.internal;
+
+import org.swerverobotics.library.interfaces.*;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * I2cRegisterMap is the implementation of II2cRegisterMap.
+ *
+ * <p>Planning works as follows. The frequently read registers that aren't constant are sorted
+ * by address, then gathered into windows greedily from the lowest address up: each window
+ * grows to take in the next register as long as it would remain within
+ * {@link II2cDeviceClient.ReadWindow#cregReadMax}. For intervals on a line, that greedy
+ * approach yields the fewest windows possible. Gaps between registers are simply read
+ * along with them, as reading a few unneeded bytes is much cheaper than switching windows.</p>
+ */
+public class I2cRegisterMap implements II2cRegisterMap
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    private final II2cDeviceClient              deviceClient;
+    private final ByteOrder                     byteOrder;
+    private final II2cDeviceClient.READ_MODE    readMode;
+    private final List<Register>                registers   = new ArrayList<Register>();
+    private final Map<Register,Integer>         cache       = new HashMap<Register,Integer>();
+    private List<II2cDeviceClient.ReadWindow>   readWindows = null;    // null means 'needs planning'
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * @param deviceClient  the client through which the device is to be accessed
+     * @param byteOrder     the order in which the bytes of multi-byte registers are laid out
+     * @param readMode      the read mode of the planned read windows
+     */
+    public I2cRegisterMap(II2cDeviceClient deviceClient, ByteOrder byteOrder, II2cDeviceClient.READ_MODE readMode)
+        {
+        this.deviceClient = deviceClient;
+        this.byteOrder    = byteOrder;
+        this.readMode     = readMode;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Declaration
+    //----------------------------------------------------------------------------------------------
+
+    @Override public synchronized Register define(String name, int ireg, int creg, boolean signed, double scale, VOLATILITY volatility, ACCESS access)
+        {
+        if (creg <= 0 || creg > II2cDeviceClient.ReadWindow.cregReadMax)
+            throw new IllegalArgumentException(String.format("register %s: invalid width %d", name, creg));
+
+        Register register = new Register(name, ireg, creg, signed, scale, volatility, access);
+        this.registers.add(register);
+        this.readWindows = null;
+        return register;
+        }
+
+    @Override public Register define(String name, int ireg, int creg, VOLATILITY volatility, ACCESS access)
+        {
+        return this.define(name, ireg, creg, false, 1.0, volatility, access);
+        }
+
+    @Override public synchronized List<II2cDeviceClient.ReadWindow> getReadWindows()
+        {
+        if (this.readWindows == null)
+            this.readWindows = Collections.unmodifiableList(this.plan());
+        return this.readWindows;
+        }
+
+    @Override public II2cDeviceClient getDeviceClient()
+        {
+        return this.deviceClient;
+        }
+
+    private List<II2cDeviceClient.ReadWindow> plan()
+        {
+        List<Register> hot = new ArrayList<Register>();
+        for (Register register : this.registers)
+            {
+            if (register.access == ACCESS.FREQUENT && register.volatility != VOLATILITY.CONSTANT)
+                hot.add(register);
+            }
+        Collections.sort(hot, new Comparator<Register>()
+            {
+            @Override public int compare(Register a, Register b)
+                {
+                return a.ireg - b.ireg;
+                }
+            });
+
+        List<II2cDeviceClient.ReadWindow> result = new ArrayList<II2cDeviceClient.ReadWindow>();
+        int iregFirst = -1;
+        int iregMax   = -1;
+        for (Register register : hot)
+            {
+            int iregMaxNext = Math.max(iregMax, register.ireg + register.creg);
+            if (iregFirst >= 0 && iregMaxNext - iregFirst <= II2cDeviceClient.ReadWindow.cregReadMax)
+                {
+                iregMax = iregMaxNext;
+                }
+            else
+                {
+                if (iregFirst >= 0)
+                    result.add(new II2cDeviceClient.ReadWindow(iregFirst, iregMax - iregFirst, this.readMode));
+                iregFirst = register.ireg;
+                iregMax   = register.ireg + register.creg;
+                }
+            }
+        if (iregFirst >= 0)
+            result.add(new II2cDeviceClient.ReadWindow(iregFirst, iregMax - iregFirst, this.readMode));
+        return result;
+        }
+
+    private II2cDeviceClient.ReadWindow windowContaining(Register register)
+        {
+        for (II2cDeviceClient.ReadWindow window : this.getReadWindows())
+            {
+            if (window.contains(register.ireg, register.creg))
+                return window;
+            }
+        return null;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Reading and writing
+    //----------------------------------------------------------------------------------------------
+
+    @Override public synchronized int readInt(Register register)
+        {
+        if (register.volatility != VOLATILITY.VOLATILE)
+            {
+            Integer value = this.cache.get(register);
+            if (value != null)
+                return value;
+            }
+
+        int value = this.getInt(register, this.readSnapshot(register));
+        if (register.volatility != VOLATILITY.VOLATILE)
+            this.cache.put(register, value);
+        return value;
+        }
+
+    @Override public double read(Register register)
+        {
+        return this.readInt(register) / register.scale;
+        }
+
+    @Override public synchronized Snapshot readSnapshot(Register register)
+        {
+        II2cDeviceClient.ReadWindow window = this.windowContaining(register);
+        II2cDeviceClient.TimestampedData ts;
+        if (window != null)
+            {
+            // Reading the whole window leaves it in place for the registers around us
+            ts = this.deviceClient.readTimeStamped(window.getIregFirst(), window.getCreg(), window, window);
+            return new Snapshot(window.getIregFirst(), ts.data, ts.nanoTime);
+            }
+        else
+            {
+            ts = this.deviceClient.readTimeStamped(register.ireg, register.creg);
+            return new Snapshot(register.ireg, ts.data, ts.nanoTime);
+            }
+        }
+
+    @Override public int getInt(Register register, Snapshot snapshot)
+        {
+        if (register.creg > 4)
+            throw new IllegalArgumentException(String.format("register %s is too wide to be an int", register));
+        if (!snapshot.contains(register))
+            throw new IllegalArgumentException(String.format("register %s is not in snapshot", register));
+
+        int ibFirst = register.ireg - snapshot.iregFirst;
+        int result  = 0;
+        for (int i = 0; i < register.creg; i++)
+            {
+            int ib = this.byteOrder == ByteOrder.LITTLE_ENDIAN ? ibFirst + register.creg - 1 - i : ibFirst + i;
+            result = (result << 8) | (snapshot.data[ib] & 0xFF);
+            }
+        if (register.signed && register.creg < 4)
+            {
+            int shift = 32 - register.creg * 8;
+            result = (result << shift) >> shift;
+            }
+        return result;
+        }
+
+    @Override public double get(Register register, Snapshot snapshot)
+        {
+        return this.getInt(register, snapshot) / register.scale;
+        }
+
+    @Override public synchronized void write(Register register, int value)
+        {
+        if (register.creg > 4)
+            throw new IllegalArgumentException(String.format("register %s is too wide to be an int", register));
+
+        byte[] data = new byte[register.creg];
+        for (int i = 0; i < register.creg; i++)
+            {
+            int ib = this.byteOrder == ByteOrder.LITTLE_ENDIAN ? i : register.creg - 1 - i;
+            data[ib] = (byte)(value >> (8 * i));
+            }
+        this.deviceClient.write(register.ireg, data);
+
+        if (register.volatility != VOLATILITY.VOLATILE)
+            {
+            // Remember what we wrote as we'd read it back: truncated and, if signed, sign extended
+            Snapshot written = new Snapshot(register.ireg, data, System.nanoTime());
+            this.cache.put(register, this.getInt(register, written));
+            }
+        }
+
+    @Override public synchronized void invalidate()
+        {
+        this.cache.clear();
+        }
+    }
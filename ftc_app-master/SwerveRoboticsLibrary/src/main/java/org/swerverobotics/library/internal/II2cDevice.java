@@ -42,4 +42,10 @@ public interface II2cDevice extends HardwareDevice
     void    writeI2cCacheToController();
 
     void    writeI2cPortFlagOnlyToController();
+
+    /** Returns the port on the controller to which the device is attached */
+    int     getPort();
+
+    /** Returns the scheduler that arbitrates among the ports of our controller. May be null. */
+    I2cPortScheduler getPortScheduler();
     }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package org.swerverobotics.library.internal;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SharedScheduler provides a library-wide pool of a small number of threads on which
+ * occasional background work (such as I2C heartbeats) can be scheduled. This avoids each
+ * object that needs only infrequent background attention from having to own its own thread.
+ *
+ * Work submitted here should be short-lived; the pool is small, and a long-running task
+ * will delay the work of others. Those who submit work are responsible for cancelling
+ * (and, if need be, awaiting) their own outstanding tasks; the pool itself is never shut down.
+ */
+public final class SharedScheduler
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    // Enough that one blocked I2C read doesn't hold up everyone else, but no more
+    private static final int cThreadMax = 2;
+
+    private static volatile ScheduledExecutorService theScheduler = null;
+    private static final Object lock = new Object();
+
+    //----------------------------------------------------------------------------------------------
+    // Operations
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Returns the shared scheduler, creating it if necessary. Threads in the scheduler are
+     * themselves only created as work is actually submitted.
+     */
+    public static ScheduledExecutorService getScheduler()
+        {
+        ScheduledExecutorService result = theScheduler;
+        if (result == null)
+            {
+            synchronized (lock)
+                {
+                if (theScheduler == null)
+                    theScheduler = new ScheduledThreadPoolExecutor(cThreadMax, new DaemonThreadFactory());
+                result = theScheduler;
+                }
+            }
+        return result;
+        }
+
+    /**
+     * Cancels the indicated task if it has not yet started, and waits for it to complete
+     * if it has. Does nothing if the task is null.
+     */
+    public static void cancelAndAwait(Future<?> task) throws InterruptedException
+        {
+        if (task != null)
+            {
+            task.cancel(false);
+            try {
+                task.get();
+                }
+            catch (CancellationException|ExecutionException e)
+                {
+                // ignore: all we care about is that the task is no longer running
+                }
+            }
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Utility
+    //----------------------------------------------------------------------------------------------
+
+    /** Our threads must never keep the process alive on their own */
+    private static class DaemonThreadFactory implements ThreadFactory
+        {
+        private final AtomicInteger threadCount = new AtomicInteger(0);
+
+        @Override public Thread newThread(Runnable runnable)
+            {
+            Thread thread = new Thread(runnable, String.format("SharedScheduler(%d)", threadCount.getAndIncrement()));
+            thread.setDaemon(true);
+            return thread;
+            }
+        }
+
+    private SharedScheduler() { }
+    }
@@ -0,0 +1,205 @@
+package org.swerverobotics.library.internal;
+
+import org.swerverobotics.library.interfaces.IBNO055IMU.*;
+
+/**
+ * SimulatedBNO055 is a rough model of the register behavior of a Bosch BNO055 absolute
+ * orientation sensor, sufficient for AdaFruitBNO055IMU to initialize and then to read
+ * orientation, angular velocity and acceleration.
+ *
+ * <p>The chip reports its chip id and a passing self test, honors system resets (during which,
+ * as on the real part, all registers read as 0xFF), and produces fusion data only when it has
+ * been taken out of CONFIG mode. The motion it reports is scripted: the robot turns about its
+ * vertical axis at a settable rate while undergoing a settable linear acceleration. Only the
+ * first register page is modelled, and axis remapping is ignored.</p>
+ *
+ * @see SimulatedI2cDevice
+ */
+public class SimulatedBNO055 extends SimulatedI2cRegisterFile
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final int     msResetDefault  = 650;      // Table 0-2, p13
+    public static final double  gravity         = 9.80665;  // m/s^2
+
+    private int     msReset;                // how long a system reset takes
+    private long    nanoResetComplete;      // when the reset in progress, if any, completes
+    private long    nanoLastUpdate;         // when we last updated the fusion output
+    private double  headingDegrees;         // the current integrated heading
+    private double  headingRate;            // degrees per second
+    private double  linearAccelX, linearAccelY, linearAccelZ;   // m/s^2
+    private int     temperature;            // degrees C
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public SimulatedBNO055()
+        {
+        this.msReset            = msResetDefault;
+        this.nanoResetComplete  = 0;
+        this.nanoLastUpdate     = 0;
+        this.headingDegrees     = 0;
+        this.headingRate        = 0;
+        this.temperature        = 25;
+        powerOnReset();
+        }
+
+    /** Sets the registers to their power-on values (Section 4.3 of the datasheet) */
+    private void powerOnReset()
+        {
+        java.util.Arrays.fill(this.registers, (byte)0);
+        setRegister(REGISTER.CHIP_ID.bVal,          AdaFruitBNO055IMU.bCHIP_ID_VALUE);
+        setRegister(REGISTER.ACCEL_REV_ID.bVal,     0xFB);
+        setRegister(REGISTER.MAG_REV_ID.bVal,       0x32);
+        setRegister(REGISTER.GYRO_REV_ID.bVal,      0x0F);
+        setRegister(REGISTER.SW_REV_ID_LSB.bVal,    0x08);
+        setRegister(REGISTER.SW_REV_ID_MSB.bVal,    0x03);
+        setRegister(REGISTER.SELFTEST_RESULT.bVal,  0x0F);
+        setRegister(REGISTER.UNIT_SEL.bVal,         0x80);
+        setRegister(REGISTER.OPR_MODE.bVal,         SENSOR_MODE.CONFIG.bVal);
+        setRegister(REGISTER.AXIS_MAP_CONFIG.bVal,  0x24);
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Scripting
+    //----------------------------------------------------------------------------------------------
+
+    /** Sets the rate, in degrees per second, at which the heading is to change */
+    public synchronized void setHeadingRate(double degreesPerSecond)
+        {
+        this.headingRate = degreesPerSecond;
+        }
+
+    /** Sets the heading directly, in degrees */
+    public synchronized void setHeading(double degrees)
+        {
+        this.headingDegrees = degrees;
+        }
+
+    /** Sets the linear acceleration to report, in m/s^2 */
+    public synchronized void setLinearAcceleration(double x, double y, double z)
+        {
+        this.linearAccelX = x;
+        this.linearAccelY = y;
+        this.linearAccelZ = z;
+        }
+
+    /** Sets the temperature to report, in degrees Celsius */
+    public synchronized void setTemperature(int degreesC)
+        {
+        this.temperature = degreesC;
+        }
+
+    /** Sets how long a system reset takes to complete */
+    public synchronized void setResetDuration(int ms)
+        {
+        this.msReset = ms;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Device behavior
+    //----------------------------------------------------------------------------------------------
+
+    @Override protected byte readRegister(int ireg)
+        {
+        if (isResetting(System.nanoTime()))
+            return (byte)0xFF;
+        return super.readRegister(ireg);
+        }
+
+    @Override protected void writeRegister(int ireg, byte value)
+        {
+        if (isResetting(System.nanoTime()))
+            return;
+
+        if (ireg == REGISTER.SYS_TRIGGER.bVal)
+            {
+            if ((value & 0x20) != 0)
+                {
+                // RST_SYS
+                this.nanoResetComplete = System.nanoTime() + this.msReset * 1000000L;
+                return;
+                }
+            // Self test (bit 0) always passes; the other bits we just remember
+            super.writeRegister(ireg, (byte)(value & ~0x01));
+            }
+        else if (ireg == REGISTER.OPR_MODE.bVal)
+            {
+            int mode = value & 0x0F;
+            super.writeRegister(ireg, (byte)mode);
+            boolean fusing = mode >= SENSOR_MODE.IMU.bVal;
+            setRegister(REGISTER.SYS_STAT.bVal,   mode==SENSOR_MODE.CONFIG.bVal ? 0x00 : (fusing ? 0x05 : 0x06));
+            setRegister(REGISTER.CALIB_STAT.bVal, fusing ? 0xFF : 0x00);
+            }
+        else if (isReadOnly(ireg))
+            {
+            // ignore
+            }
+        else
+            super.writeRegister(ireg, value);
+        }
+
+    private boolean isReadOnly(int ireg)
+        {
+        return ireg <= REGISTER.BL_REV_ID.bVal
+            || (ireg >= REGISTER.ACCEL_DATA_X_LSB.bVal && ireg <= REGISTER.SYS_ERR.bVal);
+        }
+
+    private boolean isResetting(long nanoNow)
+        {
+        if (this.nanoResetComplete != 0)
+            {
+            if (nanoNow < this.nanoResetComplete)
+                return true;
+            this.nanoResetComplete = 0;
+            powerOnReset();
+            }
+        return false;
+        }
+
+    @Override protected void update(long nanoNow)
+        {
+        double dt = this.nanoLastUpdate==0 ? 0 : (nanoNow - this.nanoLastUpdate) * 1e-9;
+        this.nanoLastUpdate = nanoNow;
+
+        if (isResetting(nanoNow))
+            return;
+
+        this.headingDegrees += this.headingRate * dt;
+        this.headingDegrees -= 360.0 * Math.floor(this.headingDegrees / 360.0);
+
+        if (this.registers[REGISTER.OPR_MODE.bVal] == SENSOR_MODE.CONFIG.bVal)
+            return;
+
+        // Table 3-17, 3-22 etc: scale according to the unit selection
+        int unitsel         = this.registers[REGISTER.UNIT_SEL.bVal];
+        double accelScale   = (unitsel & 0x01) != 0 ? 1000.0 / gravity : 100.0;           // mg or m/s^2
+        double gyroScale    = (unitsel & 0x02) != 0 ? 900.0 * Math.PI / 180.0 : 16.0;     // rad/s or deg/s
+        double eulerScale   = (unitsel & 0x04) != 0 ? 900.0 * Math.PI / 180.0 : 16.0;     // rad or deg
+
+        setVector(REGISTER.EULER_H_LSB, this.headingDegrees * eulerScale, 0, 0);
+        setVector(REGISTER.GYRO_DATA_X_LSB, 0, 0, this.headingRate * gyroScale);
+        setVector(REGISTER.LINEAR_ACCEL_DATA_X_LSB, this.linearAccelX * accelScale, this.linearAccelY * accelScale, this.linearAccelZ * accelScale);
+        setVector(REGISTER.GRAVITY_DATA_X_LSB, 0, 0, gravity * accelScale);
+        setVector(REGISTER.ACCEL_DATA_X_LSB, this.linearAccelX * accelScale, this.linearAccelY * accelScale, (this.linearAccelZ + gravity) * accelScale);
+
+        double halfAngle = Math.toRadians(this.headingDegrees) / 2;
+        double quatScale = 1 << 14;
+        setRegisterLH(REGISTER.QUATERNION_DATA_W_LSB.bVal, (int)Math.round(Math.cos(halfAngle) * quatScale));
+        setRegisterLH(REGISTER.QUATERNION_DATA_X_LSB.bVal, 0);
+        setRegisterLH(REGISTER.QUATERNION_DATA_Y_LSB.bVal, 0);
+        setRegisterLH(REGISTER.QUATERNION_DATA_Z_LSB.bVal, (int)Math.round(Math.sin(halfAngle) * quatScale));
+
+        setRegister(REGISTER.TEMP.bVal, this.temperature);
+        }
+
+    private void setVector(REGISTER regFirst, double x, double y, double z)
+        {
+        setRegisterLH(regFirst.bVal,     (int)Math.round(x));
+        setRegisterLH(regFirst.bVal + 2, (int)Math.round(y));
+        setRegisterLH(regFirst.bVal + 4, (int)Math.round(z));
+        }
+    }
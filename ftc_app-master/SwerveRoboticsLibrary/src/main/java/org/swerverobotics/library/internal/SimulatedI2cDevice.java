@@ -0,0 +1,410 @@
+package org.swerverobotics.library.internal;
+
+import com.qualcomm.robotcore.hardware.*;
+import java.util.Arrays;
+import java.util.concurrent.locks.*;
+
+/**
+ * SimulatedI2cDevice is an II2cDevice that is not backed by hardware but rather by a simulation
+ * of one I2C port of a Core Device Interface Module with a device attached whose registers
+ * are modelled by a {@link SimulatedI2cRegisterFile}. This allows I2cDeviceClient, and the
+ * drivers built on it, to be exercised and benchmarked without a robot.
+ *
+ * <p>The simulation follows the protocol of the real module. The read and write caches have
+ * the same 32 byte layout: mode, I2C address, register, and count in the first four bytes,
+ * the data buffer following, and the action flag at the end. On each cycle, whatever has been
+ * queued with {@link #writeI2cCacheToController()} or {@link #writeI2cPortFlagOnlyToController()}
+ * is transferred to the module; if the action flag is set, the I2C transaction indicated by the
+ * mode bytes is carried out on the register file; if {@link #readI2cCacheFromController()} was
+ * queued, the module's buffer is transferred back to the read cache; and finally the port
+ * ready callback is invoked.</p>
+ *
+ * <p>The cadence of the cycles and the latencies of I2C transactions and mode switches can be
+ * adjusted to approximate what is observed on real hardware.</p>
+ */
+public final class SimulatedI2cDevice implements II2cDevice
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final int     cbCache             = 32;
+    public static final int     ibMode              = 0;
+    public static final int     ibI2cAddr           = 1;
+    public static final int     ibRegister          = 2;
+    public static final int     ibCount             = 3;
+    public static final int     ibBuffer            = 4;
+    public static final int     ibActionFlag        = 31;
+    public static final byte    bModeRead           = (byte)0x80;
+    public static final byte    bModeWrite          = 0x00;
+    public static final byte    bActionFlag         = (byte)0xFF;
+    public static final byte    bNoActionFlag       = 0x00;
+
+    private final String                    name;
+    private final SimulatedI2cRegisterFile  registerFile;
+    private final I2cPortScheduler          portScheduler;
+    private final int                       port;
+    private volatile int                    i2cAddr8Bit;
+
+    private final byte[]        readCache       = new byte[cbCache];
+    private final byte[]        writeCache      = new byte[cbCache];
+    private final byte[]        moduleBuffer    = new byte[cbCache];   // the module's view of the port. Only touched on the cycle thread.
+    private final byte[]        modeLastUsed    = new byte[ibBuffer];  // the mode bytes of the last transaction carried out
+    private final Lock          readCacheLock   = new ReentrantLock();
+    private final Lock          writeCacheLock  = new ReentrantLock();
+
+    private enum TRANSFER { NONE, FLAG_ONLY, FULL }
+
+    private volatile TRANSFER   transferQueued;             // what's been asked to go out to the module
+    private volatile boolean    readQueued;                 // whether the module buffer has been asked to come back
+    private volatile boolean    portIsReady;                // false while a cycle is in progress
+
+    private volatile I2cController.I2cPortReadyCallback callback;
+    private volatile Thread     cycleThread;                // the thread running cycles, if any
+
+    private volatile int        msCycleInterval;            // time between the end of one cycle and the start of the next
+    private volatile int        msTransactionLatency;       // time added to a cycle which carries out an I2C transaction
+    private volatile int        msModeSwitchLatency;        // time added to a cycle whose transaction differs in its mode bytes from the last
+
+    private volatile long       cycleCount;
+    private volatile long       transactionCount;
+    private volatile long       modeSwitchCount;
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Instantiates a new simulated device with timings roughly comparable to those of
+     * a real Core Device Interface Module.
+     *
+     * @param name          the name to report for the device
+     * @param registerFile  the model of the device's registers
+     */
+    public SimulatedI2cDevice(String name, SimulatedI2cRegisterFile registerFile)
+        {
+        this(name, registerFile, null, 0);
+        }
+
+    /**
+     * Instantiates a new simulated device which shares the indicated port scheduler with
+     * other simulated devices, as if they were attached to different ports of the same module.
+     *
+     * @param name          the name to report for the device
+     * @param registerFile  the model of the device's registers
+     * @param portScheduler the scheduler to share. May be null.
+     * @param port          the port to which we are to appear to be attached
+     */
+    public SimulatedI2cDevice(String name, SimulatedI2cRegisterFile registerFile, I2cPortScheduler portScheduler, int port)
+        {
+        this.name                 = name;
+        this.registerFile         = registerFile;
+        this.portScheduler        = portScheduler;
+        this.port                 = port;
+        this.i2cAddr8Bit          = 0;
+        this.transferQueued       = TRANSFER.NONE;
+        this.readQueued           = false;
+        this.portIsReady          = true;
+        this.callback             = null;
+        this.cycleThread          = null;
+        this.msCycleInterval      = 10;
+        this.msTransactionLatency = 2;
+        this.msModeSwitchLatency  = 5;
+        }
+
+    public SimulatedI2cRegisterFile getRegisterFile()
+        {
+        return this.registerFile;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Simulation parameters and monitoring
+    //----------------------------------------------------------------------------------------------
+
+    public int getCycleInterval()                       { return this.msCycleInterval; }
+    public void setCycleInterval(int ms)                { this.msCycleInterval = Math.max(0, ms); }
+    public int getTransactionLatency()                  { return this.msTransactionLatency; }
+    public void setTransactionLatency(int ms)           { this.msTransactionLatency = Math.max(0, ms); }
+    public int getModeSwitchLatency()                   { return this.msModeSwitchLatency; }
+    public void setModeSwitchLatency(int ms)            { this.msModeSwitchLatency = Math.max(0, ms); }
+
+    /** Returns the number of port ready callbacks made so far */
+    public long getCycleCount()                         { return this.cycleCount; }
+    /** Returns the number of I2C transactions carried out on the register file so far */
+    public long getTransactionCount()                   { return this.transactionCount; }
+    /** Returns the number of transactions that needed the module to change its mode bytes */
+    public long getModeSwitchCount()                    { return this.modeSwitchCount; }
+
+    //----------------------------------------------------------------------------------------------
+    // HardwareDevice
+    //----------------------------------------------------------------------------------------------
+
+    @Override public String getDeviceName()
+        {
+        return this.name;
+        }
+
+    @Override public String getConnectionInfo()
+        {
+        return "simulated";
+        }
+
+    @Override public int getVersion()
+        {
+        return 0;
+        }
+
+    @Override public void close()
+        {
+        this.deregisterForPortReadyCallback();
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // II2cDevice
+    //----------------------------------------------------------------------------------------------
+
+    @Override public int getI2cAddr()
+        {
+        return this.i2cAddr8Bit;
+        }
+    @Override public void setI2cAddr(int i2cAddr8Bit)
+        {
+        this.i2cAddr8Bit = i2cAddr8Bit;
+        }
+
+    @Override public void enableI2cReadMode(int ib, int cb)
+        {
+        setMode(bModeRead, ib, cb);
+        }
+
+    @Override public void enableI2cWriteMode(int ib, int cb)
+        {
+        setMode(bModeWrite, ib, cb);
+        }
+
+    private void setMode(byte mode, int ib, int cb)
+        {
+        this.writeCacheLock.lock();
+        try {
+            this.writeCache[ibMode]     = mode;
+            this.writeCache[ibI2cAddr]  = (byte)this.i2cAddr8Bit;
+            this.writeCache[ibRegister] = (byte)ib;
+            this.writeCache[ibCount]    = (byte)cb;
+            }
+        finally
+            {
+            this.writeCacheLock.unlock();
+            }
+        }
+
+    @Override public byte[] getI2cReadCache()
+        {
+        return this.readCache;
+        }
+
+    @Override public Lock getI2cReadCacheLock()
+        {
+        return this.readCacheLock;
+        }
+
+    @Override public byte[] getI2cWriteCache()
+        {
+        return this.writeCache;
+        }
+
+    @Override public Lock getI2cWriteCacheLock()
+        {
+        return this.writeCacheLock;
+        }
+
+    @Override public boolean isI2cPortActionFlagSet()
+        {
+        return readCacheByte(ibActionFlag) == bActionFlag;
+        }
+
+    @Override public boolean isI2cPortInReadMode()
+        {
+        return readCacheByte(ibMode) == bModeRead;
+        }
+
+    @Override public boolean isI2cPortInWriteMode()
+        {
+        return readCacheByte(ibMode) == bModeWrite;
+        }
+
+    @Override public boolean isI2cPortReady()
+        {
+        return this.portIsReady;
+        }
+
+    private byte readCacheByte(int ib)
+        {
+        this.readCacheLock.lock();
+        try {
+            return this.readCache[ib];
+            }
+        finally
+            {
+            this.readCacheLock.unlock();
+            }
+        }
+
+    @Override public void setI2cPortActionFlag()
+        {
+        this.writeCacheLock.lock();
+        try {
+            this.writeCache[ibActionFlag] = bActionFlag;
+            }
+        finally
+            {
+            this.writeCacheLock.unlock();
+            }
+        }
+
+    @Override public void readI2cCacheFromController()
+        {
+        this.readQueued = true;
+        }
+
+    @Override public void writeI2cCacheToController()
+        {
+        this.transferQueued = TRANSFER.FULL;
+        }
+
+    @Override public void writeI2cPortFlagOnlyToController()
+        {
+        if (this.transferQueued != TRANSFER.FULL)
+            this.transferQueued = TRANSFER.FLAG_ONLY;
+        }
+
+    @Override public int getPort()
+        {
+        return this.port;
+        }
+
+    @Override public I2cPortScheduler getPortScheduler()
+        {
+        return this.portScheduler;
+        }
+
+    @Override public synchronized void registerForI2cPortReadyCallback(I2cController.I2cPortReadyCallback callback)
+        {
+        this.callback = callback;
+        if (this.cycleThread == null)
+            {
+            this.cycleThread = new Thread(new CycleLoop(), String.format("SimulatedI2c(%s)", this.name));
+            this.cycleThread.setDaemon(true);
+            this.cycleThread.start();
+            }
+        }
+
+    @Override public synchronized void deregisterForPortReadyCallback()
+        {
+        // We mustn't wait for the cycle thread to exit: the caller may well be holding
+        // a lock that the thread needs in order to complete the callback that's in flight.
+        // Rather, we just tell it to leave when it next gets the chance.
+        this.callback = null;
+        Thread thread = this.cycleThread;
+        this.cycleThread = null;
+        if (thread != null && thread != Thread.currentThread())
+            thread.interrupt();
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Simulation
+    //----------------------------------------------------------------------------------------------
+
+    private class CycleLoop implements Runnable
+        {
+        @Override public void run()
+            {
+            try {
+                while (cycleThread == Thread.currentThread())
+                    {
+                    Thread.sleep(msCycleInterval);
+
+                    int msLatency = doCycle();
+                    if (msLatency > 0)
+                        Thread.sleep(msLatency);
+                    portIsReady = true;
+
+                    I2cController.I2cPortReadyCallback callback = SimulatedI2cDevice.this.callback;
+                    if (callback != null && cycleThread == Thread.currentThread())
+                        {
+                        cycleCount++;
+                        callback.portIsReady(port);
+                        }
+                    }
+                }
+            catch (InterruptedException e)
+                {
+                // We've been asked to stop
+                }
+            }
+        }
+
+    /** Carries out one cycle of the module. Returns the latency that the cycle should incur. */
+    private int doCycle()
+        {
+        int msLatency = 0;
+        this.portIsReady = false;
+
+        // Transfer whatever has been queued from the write cache to the module
+        TRANSFER transfer   = this.transferQueued;
+        this.transferQueued = TRANSFER.NONE;
+        if (transfer != TRANSFER.NONE)
+            {
+            this.writeCacheLock.lock();
+            try {
+                if (transfer == TRANSFER.FULL)
+                    System.arraycopy(this.writeCache, 0, this.moduleBuffer, 0, cbCache);
+                else
+                    this.moduleBuffer[ibActionFlag] = this.writeCache[ibActionFlag];
+                }
+            finally
+                {
+                this.writeCacheLock.unlock();
+                }
+            }
+
+        // Carry out any requested I2C transaction. We don't model the device not responding
+        // at the I2C address requested: the register file always answers.
+        if (this.moduleBuffer[ibActionFlag] == bActionFlag)
+            {
+            int ireg = this.moduleBuffer[ibRegister] & 0xFF;
+            int creg = Math.min(this.moduleBuffer[ibCount] & 0xFF, ibActionFlag - ibBuffer);
+
+            if (this.moduleBuffer[ibMode] == bModeRead)
+                this.registerFile.i2cRead(ireg, creg, this.moduleBuffer, ibBuffer);
+            else
+                this.registerFile.i2cWrite(ireg, creg, this.moduleBuffer, ibBuffer);
+
+            if (!Arrays.equals(this.modeLastUsed, Arrays.copyOf(this.moduleBuffer, ibBuffer)))
+                {
+                System.arraycopy(this.moduleBuffer, 0, this.modeLastUsed, 0, ibBuffer);
+                this.modeSwitchCount++;
+                msLatency += this.msModeSwitchLatency;
+                }
+
+            this.moduleBuffer[ibActionFlag] = bNoActionFlag;
+            this.transactionCount++;
+            msLatency += this.msTransactionLatency;
+            }
+
+        // Transfer the module state back if that's been asked for
+        if (this.readQueued)
+            {
+            this.readQueued = false;
+            this.readCacheLock.lock();
+            try {
+                System.arraycopy(this.moduleBuffer, 0, this.readCache, 0, cbCache);
+                }
+            finally
+                {
+                this.readCacheLock.unlock();
+                }
+            }
+
+        return msLatency;
+        }
+    }
@@ -0,0 +1,121 @@
+package org.swerverobotics.library.internal;
+
+/**
+ * SimulatedI2cRegisterFile models the set of registers of an I2C device for use with a
+ * {@link SimulatedI2cDevice}. As is, it's simply a programmable map of 256 byte-sized
+ * registers: what's written is what's later read back. Device-specific behavior (registers
+ * that are read-only, that change on their own over time, that trigger actions when written,
+ * and so on) is modelled by subclasses that override {@link #readRegister(int)},
+ * {@link #writeRegister(int, byte)} and {@link #update(long)}.
+ *
+ * @see SimulatedBNO055
+ * @see SimulatedTCS34725
+ */
+public class SimulatedI2cRegisterFile
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final int cregMax = 256;
+
+    protected final byte[]  registers = new byte[cregMax];  // the current contents of the registers
+
+    //----------------------------------------------------------------------------------------------
+    // Programming
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Directly sets the value of a register, bypassing any device-specific write behavior.
+     * @param ireg      the register to set
+     * @param value     the value to set it to
+     */
+    public synchronized void setRegister(int ireg, int value)
+        {
+        this.registers[ireg & 0xFF] = (byte)value;
+        }
+
+    /**
+     * Directly sets the values of a contiguous set of registers, bypassing any device-specific
+     * write behavior.
+     * @param ireg      the first register to set
+     * @param data      the values to set
+     */
+    public synchronized void setRegisters(int ireg, byte[] data)
+        {
+        for (int i = 0; i < data.length; i++)
+            this.registers[(ireg + i) & 0xFF] = data[i];
+        }
+
+    /**
+     * Directly sets a pair of registers to a 16 bit value in little-endian order.
+     * @param iregLSB   the register holding the least significant byte
+     * @param value     the value to set
+     */
+    public synchronized void setRegisterLH(int iregLSB, int value)
+        {
+        this.registers[iregLSB & 0xFF]       = (byte)value;
+        this.registers[(iregLSB + 1) & 0xFF] = (byte)(value >> 8);
+        }
+
+    /**
+     * Directly retrieves the value of a register, bypassing any device-specific read behavior.
+     * @param ireg      the register to retrieve
+     * @return          the value of that register
+     */
+    public synchronized byte getRegister(int ireg)
+        {
+        return this.registers[ireg & 0xFF];
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Bus transactions
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Carries out an I2C read transaction of the indicated registers, placing the results
+     * in the indicated buffer. Called by the simulated controller.
+     */
+    public synchronized void i2cRead(int ireg, int creg, byte[] buffer, int ibFirst)
+        {
+        this.update(System.nanoTime());
+        for (int i = 0; i < creg; i++)
+            buffer[ibFirst + i] = this.readRegister((ireg + i) & 0xFF);
+        }
+
+    /**
+     * Carries out an I2C write transaction of the indicated registers, taking the data to
+     * write from the indicated buffer. Called by the simulated controller.
+     */
+    public synchronized void i2cWrite(int ireg, int creg, byte[] buffer, int ibFirst)
+        {
+        this.update(System.nanoTime());
+        for (int i = 0; i < creg; i++)
+            this.writeRegister((ireg + i) & 0xFF, buffer[ibFirst + i]);
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Device behavior
+    //----------------------------------------------------------------------------------------------
+
+    /** Returns the value of a register as seen by an I2C read. Called with the lock held. */
+    protected byte readRegister(int ireg)
+        {
+        return this.registers[ireg];
+        }
+
+    /** Updates a register as the result of an I2C write. Called with the lock held. */
+    protected void writeRegister(int ireg, byte value)
+        {
+        this.registers[ireg] = value;
+        }
+
+    /**
+     * Brings the registers up to date with the passage of time. Called with the lock held
+     * before each bus transaction.
+     * @param nanoNow   the current time on the System.nanoTime() clock
+     */
+    protected void update(long nanoNow)
+        {
+        }
+    }
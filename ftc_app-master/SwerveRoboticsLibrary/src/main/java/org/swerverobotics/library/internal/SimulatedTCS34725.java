@@ -0,0 +1,122 @@
+package org.swerverobotics.library.internal;
+
+import static org.swerverobotics.library.internal.AdaFruitTCS34725ColorSensor.*;
+
+/**
+ * SimulatedTCS34725 is a rough model of the register behavior of a TAOS TCS34725 color
+ * sensor, sufficient for AdaFruitTCS34725ColorSensor to initialize and read colors.
+ *
+ * <p>Once both powered on and enabled, the sensor completes an integration cycle every
+ * 2.4ms * (256 - ATIME), at the end of which the color data registers are updated and
+ * the AVALID status bit is set. The colors reported are scripted as irradiances which are
+ * scaled by the integration time and gain in effect, saturating as the real part does.
+ * Interrupts and the wait timer are not modelled.</p>
+ *
+ * @see SimulatedI2cDevice
+ */
+public class SimulatedTCS34725 extends SimulatedI2cRegisterFile
+    {
+    //----------------------------------------------------------------------------------------------
+    // State
+    //----------------------------------------------------------------------------------------------
+
+    public static final byte bID = 0x44;
+
+    private static final double msPerIntegrationCycle = 2.4;
+    private static final int[]  gains = { 1, 4, 16, 60 };
+
+    private double  clear, red, green, blue;    // counts per integration cycle at unity gain
+    private long    nanoIntegrationStart;       // when the current integration started, or zero if not integrating
+
+    //----------------------------------------------------------------------------------------------
+    // Construction
+    //----------------------------------------------------------------------------------------------
+
+    public SimulatedTCS34725()
+        {
+        setRegister(TCS34725_ATIME,  0xFF);
+        setRegister(TCS34725_WTIME,  0xFF);
+        setRegister(TCS34725_ID,     bID);
+        this.nanoIntegrationStart = 0;
+        setColor(10, 4, 3, 3);
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Scripting
+    //----------------------------------------------------------------------------------------------
+
+    /**
+     * Sets the light seen by the sensor, expressed as the counts that would accumulate
+     * in each channel during one 2.4ms integration cycle at unity gain.
+     */
+    public synchronized void setColor(double clear, double red, double green, double blue)
+        {
+        this.clear = clear;
+        this.red   = red;
+        this.green = green;
+        this.blue  = blue;
+        }
+
+    //----------------------------------------------------------------------------------------------
+    // Device behavior
+    //----------------------------------------------------------------------------------------------
+
+    /** Strips the command bit and transaction type from a register address */
+    private static int registerOf(int ireg)
+        {
+        return ireg & 0x1F;
+        }
+
+    @Override protected byte readRegister(int ireg)
+        {
+        return super.readRegister(registerOf(ireg));
+        }
+
+    @Override protected void writeRegister(int ireg, byte value)
+        {
+        ireg = registerOf(ireg);
+        if (ireg >= TCS34725_ID)
+            return;     // read-only
+
+        super.writeRegister(ireg, value);
+        if (ireg == TCS34725_ENABLE || ireg == TCS34725_ATIME)
+            {
+            // Changing either of these restarts (or stops) integration
+            this.nanoIntegrationStart = isIntegrating() ? System.nanoTime() : 0;
+            }
+        }
+
+    private boolean isIntegrating()
+        {
+        int enable = this.registers[TCS34725_ENABLE];
+        return (enable & TCS34725_ENABLE_PON) != 0 && (enable & TCS34725_ENABLE_AEN) != 0;
+        }
+
+    @Override protected void update(long nanoNow)
+        {
+        if (this.nanoIntegrationStart == 0)
+            return;
+
+        int cycles          = 256 - (this.registers[TCS34725_ATIME] & 0xFF);
+        long nanoIntegration = (long)(cycles * msPerIntegrationCycle * 1000000L);
+        if (nanoNow - this.nanoIntegrationStart < nanoIntegration)
+            return;
+
+        // Integration has completed at least once. Report the result and start another.
+        long integrationsCompleted = (nanoNow - this.nanoIntegrationStart) / nanoIntegration;
+        this.nanoIntegrationStart += integrationsCompleted * nanoIntegration;
+
+        double scale = cycles * gains[this.registers[TCS34725_CONTROL] & 0x03];
+        int    max   = Math.min(65535, 1024 * cycles);
+        setRegisterLH(TCS34725_CDATAL, saturate(this.clear * scale, max));
+        setRegisterLH(TCS34725_RDATAL, saturate(this.red   * scale, max));
+        setRegisterLH(TCS34725_GDATAL, saturate(this.green * scale, max));
+        setRegisterLH(TCS34725_BDATAL, saturate(this.blue  * scale, max));
+        setRegister(TCS34725_STATUS, this.registers[TCS34725_STATUS] | TCS34725_STATUS_AVALID);
+        }
+
+    private static int saturate(double value, int max)
+        {
+        return (int)Math.max(0, Math.min(max, Math.round(value)));
+        }
+    }
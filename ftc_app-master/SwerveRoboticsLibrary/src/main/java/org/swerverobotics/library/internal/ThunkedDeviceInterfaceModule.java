@@ -1,12 +1,22 @@
 package org.swerverobotics.library.internal;
 
+import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 import com.qualcomm.robotcore.hardware.*;
 import com.qualcomm.robotcore.util.*;
+import org.swerverobotics.library.*;
 import org.swerverobotics.library.interfaces.*;
 import java.util.concurrent.locks.Lock;
 
-
-public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThunkWrapper<DeviceInterfaceModule>
+/**
+ * An implementation of DeviceInterfaceModule that talks to a non-thunking target implementation
+ * by thunking all calls over to the loop thread and back again.
+ *
+ * <p>Reads of digital channels and analog inputs are served from a snapshot of all of them,
+ * taken in one thunk. The module's inputs are refreshed from the hardware once per loop()
+ * cycle, so the snapshot remains current until the loop count moves on, or until we write
+ * something that could change the digital channels.</p>
+ */
+public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThunkWrapper<DeviceInterfaceModule>, IBulkReadDeviceInterfaceModule
     {
     //----------------------------------------------------------------------------------------------
     // State
@@ -14,6 +24,11 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
 
     private DeviceInterfaceModule target;
 
+    private final Object    snapshotLock = new Object();
+    private Snapshot        snapshot;                   // the latest snapshot, or null. Guarded by snapshotLock.
+    private int             snapshotLoopCount;          // the loop() cycle in which it was taken
+    private int             snapshotGeneration;         // advanced on each invalidation
+
     @Override public DeviceInterfaceModule getWrappedTarget() { return this.target; }
 
     //----------------------------------------------------------------------------------------------
@@ -80,12 +95,95 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
         }
     
     
+    //----------------------------------------------------------------------------------------------
+    // IBulkReadDeviceInterfaceModule
+    //----------------------------------------------------------------------------------------------
+
+    @Override public void readSnapshot(Snapshot snapshot)
+        {
+        Snapshot current = this.currentSnapshot();
+        if (current == null)
+            current = this.takeSnapshot(null);
+        snapshot.copyFrom(current);
+        }
+
+    /** Returns a snapshot which is current, taking one if need be, or null if we can't tell currency */
+    private Snapshot currentSnapshot()
+        {
+        OpMode opMode = SwerveThreadContext.getOpMode();
+        if (!(opMode instanceof SynchronousOpMode))
+            return null;
+
+        SynchronousOpMode synchronousOpMode = (SynchronousOpMode)opMode;
+        synchronized (this.snapshotLock)
+            {
+            if (this.snapshot != null && this.snapshotLoopCount == synchronousOpMode.getLoopCount())
+                return this.snapshot;
+            }
+        return this.takeSnapshot(synchronousOpMode);
+        }
+
+    private Snapshot takeSnapshot(final SynchronousOpMode synchronousOpMode)
+        {
+        int generation;
+        synchronized (this.snapshotLock)
+            {
+            generation = this.snapshotGeneration;
+            }
+
+        final int[] loopCount = new int[1];
+        Snapshot result = (new ThunkForReading<Snapshot>()
+            {
+            @Override protected void actionOnLoopThread()
+                {
+                Snapshot snapshot = new Snapshot();
+                snapshot.digitalInputStateByte = target.getDigitalInputStateByte();
+                for (int channel = 0; channel < Snapshot.digitalChannelCount; channel++)
+                    snapshot.digitalChannelState[channel] = target.getDigitalChannelState(channel);
+                for (int channel = 0; channel < Snapshot.analogInputCount; channel++)
+                    snapshot.analogInputValue[channel] = target.getAnalogInputValue(channel);
+                snapshot.nanoTime = System.nanoTime();
+                if (synchronousOpMode != null)
+                    loopCount[0] = synchronousOpMode.getLoopCount();
+                this.result = snapshot;
+                }
+            }).doReadOperation();
+
+        if (synchronousOpMode != null)
+            {
+            synchronized (this.snapshotLock)
+                {
+                // Don't remember it if there's been a write in the meantime
+                if (generation == this.snapshotGeneration)
+                    {
+                    this.snapshot          = result;
+                    this.snapshotLoopCount = loopCount[0];
+                    }
+                }
+            }
+        return result;
+        }
+
+    /** Forgets the latest snapshot, as we've just written something that might change it */
+    private void invalidateSnapshot()
+        {
+        synchronized (this.snapshotLock)
+            {
+            this.snapshot = null;
+            this.snapshotGeneration++;
+            }
+        }
+
     //----------------------------------------------------------------------------------------------
     // DeviceInterfaceModule
     //----------------------------------------------------------------------------------------------
 
     @Override public int getDigitalInputStateByte()
         {
+        Snapshot snapshot = this.currentSnapshot();
+        if (snapshot != null)
+            return snapshot.digitalInputStateByte;
+
         return (new ThunkForReading<Integer>()
             {
             @Override protected void actionOnLoopThread()
@@ -104,6 +202,7 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
                 target.setDigitalIOControlByte(physicalPort);
                 }
             }).doWriteOperation();
+        this.invalidateSnapshot();
         }
 
     @Override public byte getDigitalIOControlByte()
@@ -126,6 +225,7 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
                 target.setDigitalOutputByte(physicalPort);
                 }
             }).doWriteOperation();
+        this.invalidateSnapshot();
         }
 
     @Override public byte getDigitalOutputStateByte()
@@ -167,6 +267,13 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
 
     @Override public int getAnalogInputValue(final int physicalPort)
         {
+        if (physicalPort >= 0 && physicalPort < Snapshot.analogInputCount)
+            {
+            Snapshot snapshot = this.currentSnapshot();
+            if (snapshot != null)
+                return snapshot.analogInputValue[physicalPort];
+            }
+
         return (new ThunkForReading<Integer>()
             {
             @Override protected void actionOnLoopThread()
@@ -258,10 +365,18 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
                 target.setDigitalChannelMode(physicalPort, mode);
                 }
             }).doWriteOperation();
+        this.invalidateSnapshot();
         }
 
     @Override public boolean getDigitalChannelState(final int physicalPort)
         {
+        if (physicalPort >= 0 && physicalPort < Snapshot.digitalChannelCount)
+            {
+            Snapshot snapshot = this.currentSnapshot();
+            if (snapshot != null)
+                return snapshot.digitalChannelState[physicalPort];
+            }
+
         return (new ThunkForReading<Boolean>()
             {
             @Override protected void actionOnLoopThread()
@@ -280,6 +395,7 @@ public class ThunkedDeviceInterfaceModule implements DeviceInterfaceModule, IThu
                 target.setDigitalChannelState(physicalPort, state);
                 }
             }).doWriteOperation();
+        this.invalidateSnapshot();
         }
 
     //----------------------------------------------------------------------------------------------
@@ -2,18 +2,24 @@ package org.swerverobotics.library.internal;
 
 import com.qualcomm.robotcore.hardware.*;
 import org.swerverobotics.library.interfaces.*;
+import java.util.*;
 
 /**
  * An implementation of ServoController that talks to a non-thunking target implementation
  * by thunking all calls over to the loop thread and back gain.
+ *
+ * <p>Grouped servo positions are staged here, on the calling thread, and committed to the
+ * target in one trip to the loop thread. If the target can't itself commit a group of
+ * positions, they are set one by one, but still all within that same trip.</p>
  */
-public class ThunkedServoController implements ServoController,IThunkWrapper<ServoController>
+public class ThunkedServoController implements ServoController, IThunkWrapper<ServoController>, IGroupedServoController
     {
     //----------------------------------------------------------------------------------------------
     // State
     //----------------------------------------------------------------------------------------------
 
     private ServoController target;   // can only talk to him on the loop thread
+    private final Map<Integer,Double> stagedPositions = new TreeMap<Integer,Double>();   // guarded by itself
 
     @Override public ServoController getWrappedTarget() { return this.target; }
 
@@ -138,4 +144,55 @@ public class ThunkedServoController implements ServoController,IThunkWrapper<Ser
                 }
             }).doReadOperation();
         }
-    }
\ No newline at end of file
+    
+    //----------------------------------------------------------------------------------------------
+    // IGroupedServoController
+    //----------------------------------------------------------------------------------------------
+
+    @Override public void stageServoPosition(int channel, double position)
+        {
+        synchronized (this.stagedPositions)
+            {
+            this.stagedPositions.put(channel, position);
+            }
+        }
+
+    @Override public void discardStagedServoPositions()
+        {
+        synchronized (this.stagedPositions)
+            {
+            this.stagedPositions.clear();
+            }
+        }
+
+    @Override public void commitStagedServoPositions()
+        {
+        final Map<Integer,Double> positions;
+        synchronized (this.stagedPositions)
+            {
+            if (this.stagedPositions.isEmpty())
+                return;
+            positions = new TreeMap<Integer,Double>(this.stagedPositions);
+            this.stagedPositions.clear();
+            }
+
+        (new ThunkForWriting()
+            {
+            @Override protected void actionOnLoopThread()
+                {
+                if (target instanceof IGroupedServoController)
+                    {
+                    IGroupedServoController groupedTarget = (IGroupedServoController)target;
+                    for (Map.Entry<Integer,Double> pair : positions.entrySet())
+                        groupedTarget.stageServoPosition(pair.getKey(), pair.getValue());
+                    groupedTarget.commitStagedServoPositions();
+                    }
+                else
+                    {
+                    for (Map.Entry<Integer,Double> pair : positions.entrySet())
+                        target.setServoPosition(pair.getKey(), pair.getValue());
+                    }
+                }
+            }).doWriteOperation();
+        }
+    }
@@ -217,8 +217,11 @@ public class ThunkingHardwareFactory
                 {
                 @Override public AnalogInput create(AnalogInput target)
                     {
+                    // Go through the thunked module if there is one, so that reads share its snapshots
+                    AnalogInputController targetController = ThreadSafeAnalogInput.getController(target);
+                    AnalogInputController controller = thunkedDeviceInterfaceModule(targetController);
                     return new ThreadSafeAnalogInput(
-                            ThunkedAnalogInputController.create(ThreadSafeAnalogInput.getController(target)),
+                            controller != null ? controller : ThunkedAnalogInputController.create(targetController),
                             ThreadSafeAnalogInput.getChannel(target)
                     );
                     }
@@ -273,8 +276,11 @@ public class ThunkingHardwareFactory
                 {
                 @Override public DigitalChannel create(DigitalChannel target)
                     {
+                    // Go through the thunked module if there is one, so that reads share its snapshots
+                    DigitalChannelController targetController = ThreadSafeDigitalChannel.getController(target);
+                    DigitalChannelController controller = thunkedDeviceInterfaceModule(targetController);
                     return new ThreadSafeDigitalChannel(
-                            ThunkedDigitalChannelController.create(ThreadSafeDigitalChannel.getController(target)),
+                            controller != null ? controller : ThunkedDigitalChannelController.create(targetController),
                             ThreadSafeDigitalChannel.getChannel(target)
                     );
                     }
@@ -467,6 +473,18 @@ public class ThunkingHardwareFactory
             }
         }
 
+    /** Returns the thunked device interface module wrapping the indicated controller, if any */
+    private ThunkedDeviceInterfaceModule thunkedDeviceInterfaceModule(Object controller)
+        {
+        if (controller instanceof DeviceInterfaceModule)
+            {
+            DeviceInterfaceModule module = findWrapper(this.thunkedHwmap.deviceInterfaceModule, (DeviceInterfaceModule)controller, null);
+            if (module instanceof ThunkedDeviceInterfaceModule)
+                return (ThunkedDeviceInterfaceModule)module;
+            }
+        return null;
+        }
+
     // Find and return the wrapping of the indicated target with the wrapping map; if absent,
     // return the ifAbsent value.
     private <T> T findWrapper(HardwareMap.DeviceMapping<T> wrappingMap, T target, T ifAbsent)
@@ -2,6 +2,9 @@ package org.usfirst.ftc.exampleteam.yourcodehere.android;
 
 import com.qualcomm.robotcore.hardware.DcMotor;
 
+import org.swerverobotics.library.ClassFactory;
+import org.swerverobotics.library.interfaces.IEncoderVelocityEstimator;
+
 /**
  * Created by Zach on 1/24/16.
  */
@@ -15,6 +18,7 @@ public class PIDControl {
     private double ki;
     private double kd;
     private DcMotor motor;
+    private IEncoderVelocityEstimator velocityEstimator;  //null if the motor's controller doesn't keep one
 
     public PIDControl(DcMotor m) {
         error = 0.0;
@@ -25,11 +29,12 @@ public class PIDControl {
         kp = 0.001;   //Temporary vars, test for actual vars
         ki = 0.0;
         kd = 0.0;
-        motor = m;
+        setMotor(m);
     }
 
     public void setMotor(DcMotor m) {
         motor = m;
+        velocityEstimator = m == null ? null : ClassFactory.getVelocityEstimator(m);
     }
 
     public void updatePower(long currentTime, int motorTargetPos, int motorCurrentPos) {   //Should be called in a loop
@@ -44,7 +49,16 @@ public class PIDControl {
                 dt = currentTime - lastTime;
             }
             integral += error * dt;
-            derivative = -(motorCurrentPos - lastPos) / dt;
+            if (velocityEstimator != null) {
+                //Filtered by the controller from every encoder read; ticks/sec -> ticks/ms.
+                //The estimate isn't flipped for reversed motors, but getCurrentPosition() is
+                double velocity = velocityEstimator.getVelocity() / 1000.0;
+                if (motor.getDirection() == DcMotor.Direction.REVERSE)
+                    velocity = -velocity;
+                derivative = -velocity;
+            } else if (dt > 0) {
+                derivative = -(motorCurrentPos - lastPos) / dt;
+            } //else keep the last derivative rather than divide by zero
             motor.setPower(kp * error + ki * integral + kd * derivative);
             lastTime = currentTime;
             lastPos = motorCurrentPos;